@@ -0,0 +1,148 @@
+package com.ecommerce.backend.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache en memoria acotado por cantidad de entradas (LRU) y por tiempo de vida (TTL).
+ * Lleva métricas de aciertos/fallos/expulsiones.
+ *
+ * Para evitar guardar datos viejos cuando una invalidación ocurre mientras se carga un valor,
+ * obtener(...) solo almacena el resultado si esa misma clave no se invalidó durante la carga.
+ * Las versiones se llevan por clave y solo mientras hay cargas en curso para ella, así que
+ * invalidar una clave no impide cachear las demás y el mapa no crece con claves inactivas.
+ */
+public class CacheLocal<K, V> {
+
+    private record Entrada<V>(V valor, long expiraEnNanos) {}
+
+    // Cargas en curso de una clave: cuántos lectores la están cargando y su versión actual
+    private static final class Carga {
+        int lectores;
+        long version;
+    }
+
+    private final int maxEntradas;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+    private final Map<K, Carga> cargas = new HashMap<>();
+
+    private long aciertos = 0;
+    private long fallos = 0;
+    private long expulsiones = 0;
+
+    public CacheLocal(int maxEntradas, long ttlMillis) {
+        this.maxEntradas = maxEntradas;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheLocal.this.maxEntradas) {
+                    expulsiones++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor cacheado o lo carga con el loader (fuera del lock).
+     * Si el loader devuelve null no se cachea nada.
+     */
+    public V obtener(K clave, Function<K, V> loader) {
+        Carga carga;
+        long versionInicial;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null && entrada.expiraEnNanos() - System.nanoTime() > 0) {
+                aciertos++;
+                return entrada.valor();
+            }
+            if (entrada != null) {
+                entradas.remove(clave);
+            }
+            fallos++;
+            carga = cargas.computeIfAbsent(clave, k -> new Carga());
+            carga.lectores++;
+            versionInicial = carga.version;
+        }
+
+        V valor;
+        try {
+            valor = loader.apply(clave);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                terminarCarga(clave, carga);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (valor != null && carga.version == versionInicial) {
+                entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+            }
+            terminarCarga(clave, carga);
+        }
+        return valor;
+    }
+
+    private void terminarCarga(K clave, Carga carga) {
+        if (--carga.lectores == 0) {
+            cargas.remove(clave);
+        }
+    }
+
+    /**
+     * Devuelve el valor cacheado vigente o null (sin cargar)
+     */
+    public synchronized V obtenerSiPresente(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada != null && entrada.expiraEnNanos() - System.nanoTime() > 0) {
+            aciertos++;
+            return entrada.valor();
+        }
+        if (entrada != null) {
+            entradas.remove(clave);
+        }
+        fallos++;
+        return null;
+    }
+
+    public synchronized void guardar(K clave, V valor) {
+        if (valor != null) {
+            entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public synchronized void invalidar(K clave) {
+        Carga carga = cargas.get(clave);
+        if (carga != null) {
+            carga.version++;
+        }
+        entradas.remove(clave);
+    }
+
+    public synchronized void invalidarTodo() {
+        cargas.values().forEach(carga -> carga.version++);
+        entradas.clear();
+    }
+
+    public synchronized int tamanio() {
+        return entradas.size();
+    }
+
+    public synchronized Map<String, Object> estadisticas() {
+        long consultas = aciertos + fallos;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entradas", entradas.size());
+        stats.put("maxEntradas", maxEntradas);
+        stats.put("aciertos", aciertos);
+        stats.put("fallos", fallos);
+        stats.put("expulsiones", expulsiones);
+        stats.put("tasaAciertos", consultas == 0 ? 0.0 : (double) aciertos / consultas);
+        return stats;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ecommerce.backend.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ecommerce.backend.entities.Carrito;
+
+/**
+ * Cache de la foto del carrito por usuario (clave: auth0Sub).
+ * Toda mutación del carrito debe invalidar aquí; la próxima lectura carga una foto nueva
+ * (con el mismo ETag si el contenido no cambió).
+ */
+@Component
+public class CarritoCache {
+
+    private final CacheLocal<String, CarritoSnapshot> cache;
+
+    public CarritoCache(
+            @Value("${app.cache.carrito.max-entradas:10000}") int maxEntradas,
+            @Value("${app.cache.carrito.ttl-segundos:60}") long ttlSegundos) {
+        this.cache = new CacheLocal<>(maxEntradas, ttlSegundos * 1000);
+    }
+
+    /**
+     * Devuelve la foto cacheada o la arma con las líneas que devuelva el loader
+     */
+    public CarritoSnapshot obtener(String auth0Sub, Function<String, List<Carrito>> loader) {
+        return cache.obtener(auth0Sub, sub -> CarritoSnapshot.de(loader.apply(sub)));
+    }
+
+    /**
+     * Invalida de inmediato y, si hay una transacción activa, de nuevo tras el commit,
+     * para que una lectura concurrente no vuelva a cachear el carrito anterior al cambio.
+     */
+    public void invalidar(String auth0Sub) {
+        cache.invalidar(auth0Sub);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidar(auth0Sub);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        return cache.estadisticas();
+    }
+}
@@ -0,0 +1,58 @@
+package com.ecommerce.backend.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.ecommerce.backend.dto.CarritoLineaDto;
+import com.ecommerce.backend.dto.CarritoResumenDto;
+import com.ecommerce.backend.entities.Carrito;
+
+/**
+ * Foto inmutable del carrito de un usuario. Todos los endpoints de lectura del carrito
+ * se responden desde aquí; guarda DTOs copiados de las entidades, nunca las entidades.
+ *
+ * El ETag es un hash del contenido (producto, cantidad, precio y stock disponible de cada línea):
+ * dos cargas del mismo carrito dan el mismo ETag, en cualquier instancia y después de reiniciar.
+ */
+public record CarritoSnapshot(String etag, List<CarritoLineaDto> items, Set<Long> productosIds) {
+
+    public static CarritoSnapshot de(List<Carrito> carritos) {
+        List<CarritoLineaDto> items = carritos.stream().map(CarritoLineaDto::desde).toList();
+        Set<Long> ids = items.stream()
+                .map(CarritoLineaDto::getProductoId)
+                .collect(Collectors.toUnmodifiableSet());
+        return new CarritoSnapshot(calcularEtag(items), items, ids);
+    }
+
+    /**
+     * Resumen armado en cada llamada desde las líneas inmutables (el DTO de respuesta es mutable)
+     */
+    public CarritoResumenDto resumen() {
+        return CarritoResumenDto.desdeLineas(items);
+    }
+
+    public List<Long> idsEnOrden() {
+        return items.stream().map(CarritoLineaDto::getProductoId).toList();
+    }
+
+    private static String calcularEtag(List<CarritoLineaDto> items) {
+        StringBuilder contenido = new StringBuilder();
+        for (CarritoLineaDto item : items) {
+            contenido.append(item.getProductoId()).append(':')
+                    .append(item.getCantidad()).append(':')
+                    .append(item.getProducto().getPrecio()).append(':')
+                    .append(item.getProducto().getStockDisponible()).append(';');
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contenido.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"c" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
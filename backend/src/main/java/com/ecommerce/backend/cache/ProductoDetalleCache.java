@@ -0,0 +1,63 @@
+package com.ecommerce.backend.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ecommerce.backend.dto.ProductoConDetalleDto;
+
+/**
+ * Cache de los DTO de detalle de producto (el endpoint más consultado).
+ * Toda escritura sobre un producto (datos o stock) debe invalidarlo aquí.
+ */
+@Component
+public class ProductoDetalleCache {
+
+    private final CacheLocal<Long, ProductoConDetalleDto> cache;
+
+    public ProductoDetalleCache(
+            @Value("${app.cache.producto-detalle.max-entradas:5000}") int maxEntradas,
+            @Value("${app.cache.producto-detalle.ttl-segundos:300}") long ttlSegundos) {
+        this.cache = new CacheLocal<>(maxEntradas, ttlSegundos * 1000);
+    }
+
+    public ProductoConDetalleDto obtener(Long productoId, Function<Long, ProductoConDetalleDto> loader) {
+        return cache.obtener(productoId, loader);
+    }
+
+    public void invalidar(Long productoId) {
+        invalidar(List.of(productoId));
+    }
+
+    /**
+     * Invalida de inmediato y, si hay una transacción activa, de nuevo tras el commit,
+     * para que una lectura concurrente no vuelva a cachear el estado anterior al cambio.
+     */
+    public void invalidar(Collection<Long> productosIds) {
+        List<Long> ids = List.copyOf(productosIds);
+        ids.forEach(cache::invalidar);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(cache::invalidar);
+                }
+            });
+        }
+    }
+
+    public void invalidarTodo() {
+        cache.invalidarTodo();
+    }
+
+    public Map<String, Object> estadisticas() {
+        return cache.estadisticas();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.backend.cache;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ecommerce.backend.entities.Usuario;
+import com.ecommerce.backend.exceptions.RecursoNoEncontradoException;
+import com.ecommerce.backend.repositories.UsuarioRepository;
+
+/**
+ * Resolución auth0Sub -> id de usuario compartida por todos los servicios.
+ * El sub de un usuario no cambia, así que la entrada solo se invalida al eliminar el usuario;
+ * se llena al provisionar y, si falta, con una consulta que solo lee el id.
+ */
+@Component
+public class UsuarioIdCache {
+
+    private final CacheLocal<String, Long> cache;
+    private final UsuarioRepository usuarioRepository;
+
+    public UsuarioIdCache(
+            UsuarioRepository usuarioRepository,
+            @Value("${app.cache.usuario-id.max-entradas:50000}") int maxEntradas,
+            @Value("${app.cache.usuario-id.ttl-segundos:3600}") long ttlSegundos) {
+        this.usuarioRepository = usuarioRepository;
+        this.cache = new CacheLocal<>(maxEntradas, ttlSegundos * 1000);
+    }
+
+    /**
+     * Id del usuario o vacío si no está provisionado (los faltantes no se cachean)
+     */
+    public Optional<Long> resolverId(String auth0Sub) {
+        if (auth0Sub == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.obtener(auth0Sub, sub -> usuarioRepository.findIdByAuth0Sub(sub).orElse(null)));
+    }
+
+    public Long requerirId(String auth0Sub) {
+        return resolverId(auth0Sub)
+                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
+    }
+
+    /**
+     * Referencia (proxy sin SELECT) al usuario, para asociarlo a entidades nuevas.
+     * Debe usarse dentro de una transacción.
+     */
+    public Usuario referencia(String auth0Sub) {
+        return usuarioRepository.getReferenceById(requerirId(auth0Sub));
+    }
+
+    /**
+     * Cachea el id de un usuario recién provisionado. Si hay una transacción activa se guarda
+     * recién tras el commit, para no dejar cacheado el id de una fila que terminó en rollback.
+     */
+    public void registrar(Usuario usuario) {
+        if (usuario == null || usuario.getId() == null || usuario.getAuth0Sub() == null) {
+            return;
+        }
+        String auth0Sub = usuario.getAuth0Sub();
+        Long id = usuario.getId();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.guardar(auth0Sub, id);
+                }
+            });
+        } else {
+            cache.guardar(auth0Sub, id);
+        }
+    }
+
+    /**
+     * Invalida de inmediato y, si hay una transacción activa, de nuevo tras el commit
+     */
+    public void invalidar(String auth0Sub) {
+        cache.invalidar(auth0Sub);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidar(auth0Sub);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        return cache.estadisticas();
+    }
+}
@@ -0,0 +1,59 @@
+package com.ecommerce.backend.config;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prepara la búsqueda de texto completo sobre productos (idempotente, se ejecuta al iniciar):
+ * - configuración "es_unaccent": stemming en español + eliminación de acentos
+ * - columna generada productos.busqueda (tsvector ponderado: título A, categoría B, descripción C),
+ *   que Postgres mantiene sincronizada en cada INSERT/UPDATE
+ * - índice GIN sobre esa columna
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BusquedaProductosRunner implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SQL_EXTENSION = "CREATE EXTENSION IF NOT EXISTS unaccent";
+
+    private static final String SQL_CONFIGURACION =
+            "DO $$ BEGIN " +
+            "IF NOT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'es_unaccent') THEN " +
+            "CREATE TEXT SEARCH CONFIGURATION es_unaccent (COPY = spanish); " +
+            "ALTER TEXT SEARCH CONFIGURATION es_unaccent " +
+            "ALTER MAPPING FOR hword, hword_part, word WITH unaccent, spanish_stem; " +
+            "END IF; END $$";
+
+    private static final String SQL_COLUMNA =
+            "ALTER TABLE productos ADD COLUMN IF NOT EXISTS busqueda tsvector GENERATED ALWAYS AS (" +
+            "setweight(to_tsvector('es_unaccent'::regconfig, coalesce(titulo, '')), 'A') || " +
+            "setweight(to_tsvector('es_unaccent'::regconfig, coalesce(categoria, '')), 'B') || " +
+            "setweight(to_tsvector('es_unaccent'::regconfig, coalesce(descripcion, '')), 'C')" +
+            ") STORED";
+
+    private static final String SQL_INDICE =
+            "CREATE INDEX IF NOT EXISTS idx_productos_busqueda ON productos USING GIN (busqueda)";
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            jdbcTemplate.execute(SQL_EXTENSION);
+            jdbcTemplate.execute(SQL_CONFIGURACION);
+            jdbcTemplate.execute(SQL_COLUMNA);
+            jdbcTemplate.execute(SQL_INDICE);
+            log.info("🔎 Índice de búsqueda de productos listo");
+        } catch (DataAccessException e) {
+            // No se bloquea el arranque: el resto de la API funciona sin búsqueda
+            log.error("❌ No se pudo preparar la búsqueda de productos: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ecommerce.backend.config;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Migración de datos: copia las URLs de la antigua columna productos.imagenes_json (TEXT con JSON)
+ * a la columna nativa productos.imagenes (text[]). Es idempotente: solo toca filas aún sin migrar,
+ * y no hace nada si la columna antigua no existe.
+ *
+ * Corre al crear el bean, después de que Hibernate actualiza el esquema (depende del
+ * entityManagerFactory) y antes de que el servidor web acepte requests. El JSON se parsea fila por
+ * fila: una fila malformada queda con el arreglo vacío y su id se informa en el log.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class MigracionImagenesRunner {
+
+    private static final int LOTE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    private record Fila(long id, String[] imagenes) {}
+
+    private static final String SQL_EXISTE_COLUMNA_JSON =
+            "SELECT COUNT(*) FROM information_schema.columns " +
+            "WHERE table_name = 'productos' AND column_name = 'imagenes_json'";
+
+    private static final String SQL_PENDIENTES =
+            "SELECT id_producto, imagenes_json FROM productos " +
+            "WHERE imagenes IS NULL AND id_producto > ? ORDER BY id_producto LIMIT " + LOTE;
+
+    private static final String SQL_GUARDAR =
+            "UPDATE productos SET imagenes = ? WHERE id_producto = ? AND imagenes IS NULL";
+
+    @PostConstruct
+    public void migrar() {
+        try {
+            Integer existe = jdbcTemplate.queryForObject(SQL_EXISTE_COLUMNA_JSON, Integer.class);
+            if (existe == null || existe == 0) {
+                return;
+            }
+
+            int migradas = 0;
+            List<Long> malformadas = new ArrayList<>();
+            long ultimoId = 0;
+            while (true) {
+                List<Fila> lote = new ArrayList<>(LOTE);
+                jdbcTemplate.query(SQL_PENDIENTES, rs -> {
+                    long id = rs.getLong(1);
+                    String[] imagenes = parsear(rs.getString(2));
+                    if (imagenes == null) {
+                        malformadas.add(id);
+                        imagenes = new String[0];
+                    }
+                    lote.add(new Fila(id, imagenes));
+                }, ultimoId);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                guardar(lote);
+                migradas += lote.size();
+                ultimoId = lote.get(lote.size() - 1).id();
+            }
+
+            if (migradas > 0) {
+                log.info("📦 Migradas {} filas de imagenes_json a imagenes (text[])", migradas);
+            }
+            if (!malformadas.isEmpty()) {
+                log.warn("⚠️ imagenes_json malformado en {} productos (quedaron sin imágenes): {}",
+                        malformadas.size(), malformadas);
+            }
+        } catch (DataAccessException e) {
+            // No se bloquea el arranque: las filas sin migrar se leen como producto sin imágenes
+            log.error("❌ No se pudo migrar imagenes_json: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve las URLs del JSON, un arreglo vacío si no hay, o null si el JSON es inválido
+     */
+    String[] parsear(String json) {
+        if (json == null || json.isBlank()) {
+            return new String[0];
+        }
+        try {
+            String[] imagenes = objectMapper.readValue(json, String[].class);
+            return imagenes != null ? imagenes : new String[0];
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void guardar(List<Fila> lote) {
+        jdbcTemplate.batchUpdate(SQL_GUARDAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Fila fila = lote.get(i);
+                ps.setArray(1, ps.getConnection().createArrayOf("text", fila.imagenes()));
+                ps.setLong(2, fila.id());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lote.size();
+            }
+        });
+    }
+}
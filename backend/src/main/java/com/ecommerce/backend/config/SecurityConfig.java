@@ -29,14 +29,17 @@ public class SecurityConfig {
     private final AudienceValidator audienceValidator;
     private final String issuer;
     private final String allowedOrigins;
+    private final String permisoMetricas;
 
     public SecurityConfig(
             AudienceValidator audienceValidator,
             @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer,
-            @Value("${app.cors.allowed-origins}") String allowedOrigins) {
+            @Value("${app.cors.allowed-origins}") String allowedOrigins,
+            @Value("${app.seguridad.permiso-metricas:read:metricas}") String permisoMetricas) {
         this.audienceValidator = audienceValidator;
         this.issuer = issuer;
         this.allowedOrigins = allowedOrigins;
+        this.permisoMetricas = permisoMetricas;
     }
 
     @Bean
@@ -45,6 +48,10 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
                     .requestMatchers("/health", "/api/public/**").permitAll()
+                    // Métricas internas (caches, purgas, conteos): solo con el permiso de Auth0 para administradores
+                    .requestMatchers("/api/carritos/_cache/**", "/api/carritos/_purga/**",
+                                     "/api/private/producto/_cache/**", "/api/private/producto/_count")
+                        .hasAuthority(permisoMetricas)
                     .anyRequest().authenticated())
                 .oauth2ResourceServer(oauth -> oauth.jwt(jwt -> jwt
                     .jwtAuthenticationConverter(jwtAuthConverter())));
@@ -1,12 +1,21 @@
 package com.ecommerce.backend.controllers;
 
+import com.ecommerce.backend.cache.CarritoSnapshot;
 import com.ecommerce.backend.dto.AgregarCarritoDto;
 import com.ecommerce.backend.dto.ActualizarCantidadDto;
+import com.ecommerce.backend.dto.CarritoLineaDto;
+import com.ecommerce.backend.dto.CarritoResumenDto;
+import com.ecommerce.backend.dto.FusionCarritoResultadoDto;
+import com.ecommerce.backend.dto.FusionarCarritoDto;
 import com.ecommerce.backend.dto.MensajeResponse;
+import com.ecommerce.backend.dto.OperacionesCarritoDto;
 import com.ecommerce.backend.entities.Carrito;
 import com.ecommerce.backend.services.CarritoService;
+import com.ecommerce.backend.services.PurgaCarritosService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -25,19 +34,23 @@ import java.util.Map;
 public class CarritoController {
 
     private final CarritoService carritoService;
+    private final PurgaCarritosService purgaCarritosService;
 
     /**
      * GET /api/carritos
      * Obtener todos los carritos del usuario autenticado
      */
     @GetMapping
-    public ResponseEntity<List<Carrito>> obtenerCarritos(Authentication authentication) {
+    public ResponseEntity<List<CarritoLineaDto>> obtenerCarritos(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String auth0Sub = authentication.getName();
         log.info("🛒 GET /api/carritos - Usuario: {}", auth0Sub);
 
-        List<Carrito> carritos = carritoService.obtenerCarritos(auth0Sub);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
-        return ResponseEntity.ok(carritos);
+        return responderCondicional(snapshot, ifNoneMatch, snapshot.items());
     }
 
     /**
@@ -45,13 +58,16 @@ public class CarritoController {
      * Obtener solo los IDs de productos en carritos
      */
     @GetMapping("/ids")
-    public ResponseEntity<List<Long>> obtenerIdsCarritos(Authentication authentication) {
+    public ResponseEntity<List<Long>> obtenerIdsCarritos(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String auth0Sub = authentication.getName();
         log.info("🔢 GET /api/carritos/ids - Usuario: {}", auth0Sub);
 
-        List<Long> ids = carritoService.obtenerIdsCarritos(auth0Sub);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
-        return ResponseEntity.ok(ids);
+        return responderCondicional(snapshot, ifNoneMatch, snapshot.idsEnOrden());
     }
 
     /**
@@ -59,16 +75,19 @@ public class CarritoController {
      * Obtener cantidad de productos en el carrito
      */
     @GetMapping("/count")
-    public ResponseEntity<Map<String, Long>> contarCarritos(Authentication authentication) {
+    public ResponseEntity<Map<String, Long>> contarCarritos(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String auth0Sub = authentication.getName();
         log.info("📊 GET /api/carritos/count - Usuario: {}", auth0Sub);
 
-        long cantidad = carritoService.contarCarritos(auth0Sub);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
         Map<String, Long> response = new HashMap<>();
-        response.put("cantidad", cantidad);
+        response.put("cantidad", (long) snapshot.items().size());
 
-        return ResponseEntity.ok(response);
+        return responderCondicional(snapshot, ifNoneMatch, response);
     }
 
     /**
@@ -76,16 +95,19 @@ public class CarritoController {
      * Obtener el total del carrito
      */
     @GetMapping("/total")
-    public ResponseEntity<Map<String, Double>> obtenerTotal(Authentication authentication) {
+    public ResponseEntity<Map<String, Double>> obtenerTotal(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String auth0Sub = authentication.getName();
         log.info("💰 GET /api/carritos/total - Usuario: {}", auth0Sub);
 
-        Double total = carritoService.calcularTotal(auth0Sub);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
         Map<String, Double> response = new HashMap<>();
-        response.put("total", total);
+        response.put("total", snapshot.resumen().getTotal());
 
-        return ResponseEntity.ok(response);
+        return responderCondicional(snapshot, ifNoneMatch, response);
     }
 
     /**
@@ -95,17 +117,18 @@ public class CarritoController {
     @GetMapping("/check/{productoId}")
     public ResponseEntity<Map<String, Boolean>> verificarCarrito(
             @PathVariable Long productoId,
-            Authentication authentication
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
         String auth0Sub = authentication.getName();
         log.info("🔍 GET /api/carritos/check/{} - Usuario: {}", productoId, auth0Sub);
 
-        boolean estaEnCarrito = carritoService.estaEnCarrito(auth0Sub, productoId);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
         Map<String, Boolean> response = new HashMap<>();
-        response.put("estaEnCarrito", estaEnCarrito);
+        response.put("estaEnCarrito", snapshot.productosIds().contains(productoId));
 
-        return ResponseEntity.ok(response);
+        return responderCondicional(snapshot, ifNoneMatch, response);
     }
 
     /**
@@ -113,13 +136,34 @@ public class CarritoController {
      * Obtener resumen completo del carrito
      */
     @GetMapping("/resumen")
-    public ResponseEntity<Map<String, Object>> obtenerResumen(Authentication authentication) {
+    public ResponseEntity<CarritoResumenDto> obtenerResumen(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String auth0Sub = authentication.getName();
         log.info("📊 GET /api/carritos/resumen - Usuario: {}", auth0Sub);
 
-        Map<String, Object> resumen = carritoService.obtenerResumen(auth0Sub);
+        CarritoSnapshot snapshot = carritoService.obtenerSnapshot(auth0Sub);
 
-        return ResponseEntity.ok(resumen);
+        return responderCondicional(snapshot, ifNoneMatch, snapshot.resumen());
+    }
+
+    /**
+     * GET /api/carritos/_cache/stats
+     * Métricas del cache de carritos
+     */
+    @GetMapping("/_cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(carritoService.estadisticasCache());
+    }
+
+    /**
+     * GET /api/carritos/_purga/stats
+     * Métricas de la purga de carritos abandonados
+     */
+    @GetMapping("/_purga/stats")
+    public ResponseEntity<Map<String, Object>> purgaStats() {
+        return ResponseEntity.ok(purgaCarritosService.estadisticas());
     }
 
     /**
@@ -140,6 +184,41 @@ public class CarritoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(carrito);
     }
 
+    /**
+     * POST /api/carritos/operaciones
+     * Aplicar varias operaciones (agregar / establecer cantidad / eliminar) en una sola llamada
+     */
+    @PostMapping("/operaciones")
+    public ResponseEntity<CarritoResumenDto> aplicarOperaciones(
+            @Valid @RequestBody OperacionesCarritoDto dto,
+            Authentication authentication
+    ) {
+        String auth0Sub = authentication.getName();
+        log.info("🧺 POST /api/carritos/operaciones - Usuario: {}, Operaciones: {}", 
+                auth0Sub, dto.getOperaciones().size());
+
+        CarritoResumenDto resumen = carritoService.aplicarOperaciones(auth0Sub, dto.getOperaciones());
+
+        return ResponseEntity.ok(resumen);
+    }
+
+    /**
+     * POST /api/carritos/fusionar
+     * Fusionar el carrito de invitado (guardado en el cliente) después del login
+     */
+    @PostMapping("/fusionar")
+    public ResponseEntity<FusionCarritoResultadoDto> fusionarCarrito(
+            @Valid @RequestBody FusionarCarritoDto dto,
+            Authentication authentication
+    ) {
+        String auth0Sub = authentication.getName();
+        log.info("🔀 POST /api/carritos/fusionar - Usuario: {}, Líneas: {}", auth0Sub, dto.getItems().size());
+
+        FusionCarritoResultadoDto resultado = carritoService.fusionarCarritoInvitado(auth0Sub, dto.getItems());
+
+        return ResponseEntity.ok(resultado);
+    }
+
     /**
      * PUT /api/carritos/{productoId}/cantidad
      * Actualizar cantidad de un producto en el carrito
@@ -189,4 +268,33 @@ public class CarritoController {
 
         return ResponseEntity.ok(new MensajeResponse("Carrito limpiado exitosamente"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Responde 304 si el cliente ya tiene esta versión del carrito (If-None-Match), o 200 con ETag.
+     * El cuerpo sale de la misma foto que el ETag, así nunca se desalinean.
+     */
+    private <T> ResponseEntity<T> responderCondicional(CarritoSnapshot snapshot, String ifNoneMatch, T cuerpo) {
+        String etag = snapshot.etag();
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (coincideEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(cuerpo);
+    }
+
+    private boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
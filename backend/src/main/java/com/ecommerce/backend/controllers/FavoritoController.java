@@ -1,7 +1,7 @@
 package com.ecommerce.backend.controllers;
 
 import com.ecommerce.backend.dto.AgregarFavoritoDto;
-import com.ecommerce.backend.dto.MensajeResponse;
+import com.ecommerce.backend.dto.EstadoFavoritoDto;
 import com.ecommerce.backend.entities.Favorito;
 import com.ecommerce.backend.services.FavoritoService;
 import lombok.RequiredArgsConstructor;
@@ -92,36 +92,36 @@ public class FavoritoController {
 
     /**
      * POST /api/favoritos
-     * Agregar producto a favoritos
+     * Agregar producto a favoritos (201 si se agregó, 200 si ya estaba)
      */
     @PostMapping
-    public ResponseEntity<Favorito> agregarFavorito(
+    public ResponseEntity<EstadoFavoritoDto> agregarFavorito(
             @Valid @RequestBody AgregarFavoritoDto dto,
             Authentication authentication
     ) {
         String auth0Sub = authentication.getName();
         log.info("❤️ POST /api/favoritos - Usuario: {}, Producto: {}", auth0Sub, dto.getProductoId());
 
-        Favorito favorito = favoritoService.agregarFavorito(auth0Sub, dto.getProductoId());
+        EstadoFavoritoDto estado = favoritoService.agregarFavorito(auth0Sub, dto.getProductoId());
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(favorito);
+        return ResponseEntity.status(estado.isCambio() ? HttpStatus.CREATED : HttpStatus.OK).body(estado);
     }
 
     /**
      * DELETE /api/favoritos/{productoId}
-     * Eliminar producto de favoritos
+     * Eliminar producto de favoritos (idempotente)
      */
     @DeleteMapping("/{productoId}")
-    public ResponseEntity<MensajeResponse> eliminarFavorito(
+    public ResponseEntity<EstadoFavoritoDto> eliminarFavorito(
             @PathVariable Long productoId,
             Authentication authentication
     ) {
         String auth0Sub = authentication.getName();
         log.info("💔 DELETE /api/favoritos/{} - Usuario: {}", productoId, auth0Sub);
 
-        favoritoService.eliminarFavorito(auth0Sub, productoId);
+        EstadoFavoritoDto estado = favoritoService.eliminarFavorito(auth0Sub, productoId);
 
-        return ResponseEntity.ok(new MensajeResponse("Producto eliminado de favoritos"));
+        return ResponseEntity.ok(estado);
     }
 
     /**
@@ -130,21 +130,15 @@ public class FavoritoController {
      * Este es el endpoint más útil para el botón de favoritos en el frontend
      */
     @PostMapping("/toggle")
-    public ResponseEntity<?> toggleFavorito(
+    public ResponseEntity<EstadoFavoritoDto> toggleFavorito(
             @Valid @RequestBody AgregarFavoritoDto dto,
             Authentication authentication
     ) {
         String auth0Sub = authentication.getName();
         log.info("🔄 POST /api/favoritos/toggle - Usuario: {}, Producto: {}", auth0Sub, dto.getProductoId());
 
-        Favorito resultado = favoritoService.toggleFavorito(auth0Sub, dto.getProductoId());
+        EstadoFavoritoDto estado = favoritoService.toggleFavorito(auth0Sub, dto.getProductoId());
 
-        if (resultado == null) {
-            // Se eliminó
-            return ResponseEntity.ok(new MensajeResponse("Producto eliminado de favoritos"));
-        } else {
-            // Se agregó
-            return ResponseEntity.status(HttpStatus.CREATED).body(resultado);
-        }
+        return ResponseEntity.ok(estado);
     }
-}
\ No newline at end of file
+}
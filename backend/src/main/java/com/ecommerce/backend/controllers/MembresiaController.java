@@ -0,0 +1,53 @@
+package com.ecommerce.backend.controllers;
+
+import com.ecommerce.backend.dto.MembresiaProductosDto;
+import com.ecommerce.backend.services.CarritoService;
+import com.ecommerce.backend.services.FavoritoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/membresia")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MembresiaController {
+
+    private static final int MAX_IDS = 200;
+
+    private final FavoritoService favoritoService;
+    private final CarritoService carritoService;
+
+    /**
+     * GET /api/membresia?ids=1,2,3
+     * Para una grilla de productos: cuáles son favoritos y cuáles están en el carrito.
+     * Favoritos: una consulta indexada (id_usuario, id_producto IN ...); carrito: desde la foto cacheada.
+     */
+    @GetMapping
+    public ResponseEntity<MembresiaProductosDto> obtenerMembresia(
+            @RequestParam("ids") List<Long> ids,
+            Authentication authentication
+    ) {
+        String auth0Sub = authentication.getName();
+        log.info("🏷️ GET /api/membresia - Usuario: {}, Productos: {}", auth0Sub, ids.size());
+
+        Set<Long> productosIds = new LinkedHashSet<>(ids);
+        productosIds.remove(null);
+        if (productosIds.size() > MAX_IDS) {
+            throw new IllegalArgumentException("Máximo " + MAX_IDS + " productos por consulta");
+        }
+
+        MembresiaProductosDto membresia = new MembresiaProductosDto(
+                favoritoService.filtrarFavoritos(auth0Sub, productosIds),
+                carritoService.filtrarEnCarrito(auth0Sub, productosIds));
+
+        return ResponseEntity.ok(membresia);
+    }
+}
@@ -2,17 +2,23 @@ package com.ecommerce.backend.controllers;
 
 import com.ecommerce.backend.dto.CheckoutRequestDto;
 import com.ecommerce.backend.dto.MensajeResponse;
+import com.ecommerce.backend.dto.OrdenHistorialDto;
+import com.ecommerce.backend.dto.OrdenVendedorDto;
+import com.ecommerce.backend.dto.PaginaCursorDto;
+import com.ecommerce.backend.dto.ProductoMasVendido;
 import com.ecommerce.backend.entities.Orden;
 import com.ecommerce.backend.services.OrdenService;
 import com.ecommerce.backend.services.VendedorService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -67,6 +73,21 @@ public class OrdenController {
         return ResponseEntity.ok(ordenes);
     }
     
+    /**
+     * GET /api/ordenes/historial?cursor=&limite=
+     * Historial paginado del comprador (órdenes + líneas con producto resumido)
+     */
+    @GetMapping("/historial")
+    public ResponseEntity<PaginaCursorDto<OrdenHistorialDto>> obtenerHistorial(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            Authentication authentication) {
+        String auth0Sub = authentication.getName();
+        log.info("📋 GET /api/ordenes/historial - Usuario: {}", auth0Sub);
+        
+        return ResponseEntity.ok(ordenService.obtenerHistorial(auth0Sub, cursor, limite));
+    }
+    
     /**
      * GET /api/ordenes/vendedor
      * Obtener órdenes donde el usuario es vendedor
@@ -123,15 +144,36 @@ public class OrdenController {
     }
     
     /**
-     * GET /api/ordenes/vendedor/productos-mas-vendidos
-     * Obtener productos más vendidos del vendedor
+     * GET /api/ordenes/vendedor/feed?desde=&hasta=&cursor=&limite=
+     * Feed paginado de órdenes del vendedor (fechas ISO-8601, ventana opcional)
+     */
+    @GetMapping("/vendedor/feed")
+    public ResponseEntity<PaginaCursorDto<OrdenVendedorDto>> obtenerFeedVendedor(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            Authentication authentication) {
+        String auth0Sub = authentication.getName();
+        log.info("📰 GET /api/ordenes/vendedor/feed - Vendedor: {}", auth0Sub);
+        
+        return ResponseEntity.ok(vendedorService.obtenerFeed(auth0Sub, desde, hasta, cursor, limite));
+    }
+    
+    /**
+     * GET /api/ordenes/vendedor/productos-mas-vendidos?k=&desde=&hasta=
+     * Obtener productos más vendidos del vendedor (top 5 por defecto, fechas ISO-8601 opcionales)
      */
     @GetMapping("/vendedor/productos-mas-vendidos")
-    public ResponseEntity<List<Map<String, Object>>> obtenerProductosMasVendidos(Authentication authentication) {
+    public ResponseEntity<List<ProductoMasVendido>> obtenerProductosMasVendidos(
+            @RequestParam(required = false) Integer k,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant hasta,
+            Authentication authentication) {
         String auth0Sub = authentication.getName();
         log.info("🏆 GET /api/ordenes/vendedor/productos-mas-vendidos - Vendedor: {}", auth0Sub);
         
-        List<Map<String, Object>> productos = vendedorService.obtenerProductosMasVendidos(auth0Sub);
+        List<ProductoMasVendido> productos = vendedorService.obtenerProductosMasVendidos(auth0Sub, k, desde, hasta);
         return ResponseEntity.ok(productos);
     }
 }
@@ -10,11 +10,17 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.dto.PaginaCursorDto;
 import com.ecommerce.backend.dto.ProductoConDetalleDto;
 import com.ecommerce.backend.dto.ProductoCreateDto;
+import com.ecommerce.backend.dto.ProductoResumen;
+import com.ecommerce.backend.dto.ProductosFiltradosDto;
+import com.ecommerce.backend.dto.SugerenciaDto;
 import com.ecommerce.backend.entities.Producto;
 import com.ecommerce.backend.entities.Usuario;
-import com.ecommerce.backend.repositories.UsuarioRepository;
+import com.ecommerce.backend.services.AutocompletadoService;
 import com.ecommerce.backend.services.ProductoService;
 import com.ecommerce.backend.services.FileStorageService;
 
@@ -30,8 +36,10 @@ import java.util.List;
 public class ProductoController {
 
     private final ProductoService productoService;
-    private final UsuarioRepository usuarioRepository;
+    private final UsuarioIdCache usuarioIdCache;
     private final FileStorageService fileStorageService;
+    private final ProductoDetalleCache productoDetalleCache;
+    private final AutocompletadoService autocompletadoService;
 
     // ---------- READ ----------
     @GetMapping(produces = "application/json")
@@ -39,6 +47,44 @@ public class ProductoController {
         return ResponseEntity.ok(productoService.getProductos());
     }
 
+    // Tarjetas del catálogo como proyección liviana (sin descripción ni arreglo de imágenes)
+    @GetMapping(value = "/resumen", produces = "application/json")
+    public ResponseEntity<List<ProductoResumen>> getProductosResumen() {
+        return ResponseEntity.ok(productoService.listarResumen());
+    }
+
+    @GetMapping(value = "/pagina", produces = "application/json")
+    public ResponseEntity<PaginaCursorDto<Producto>> getProductosPagina(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.getProductosPagina(cursor, limite));
+    }
+
+    @GetMapping(value = "/buscar", produces = "application/json")
+    public ResponseEntity<PaginaCursorDto<Producto>> buscarProductos(
+            @RequestParam(name = "q", required = false) String consulta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.buscarProductos(consulta, cursor, limite));
+    }
+
+    @GetMapping(value = "/sugerencias", produces = "application/json")
+    public ResponseEntity<List<SugerenciaDto>> sugerirTitulos(
+            @RequestParam(name = "q", required = false) String texto,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(autocompletadoService.sugerir(texto, limite));
+    }
+
+    @GetMapping(value = "/filtrar", produces = "application/json")
+    public ResponseEntity<ProductosFiltradosDto> filtrarProductos(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) Integer rango,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.filtrarProductos(categoria, estado, rango, cursor, limite));
+    }
+
     @GetMapping(value = "/{id}", produces = "application/json")
     public ResponseEntity<?> getProductoById(@PathVariable Long id) {
         Optional<ProductoConDetalleDto> producto = productoService.getProductoConDetalle(id); // 🔥 Usar el nuevo método
@@ -50,15 +96,28 @@ public class ProductoController {
     @GetMapping("/mine")
     public ResponseEntity<?> getMyProducts(@AuthenticationPrincipal Jwt jwt) {
         String sub = jwt.getClaimAsString("sub");
-        var userOpt = usuarioRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
+        var usuarioIdOpt = usuarioIdCache.resolverId(sub);
+        if (usuarioIdOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of(
                     "error", "USER_NOT_PROVISIONED",
                     "message", "Provisiona primero tu usuario."
                 ));
         }
-        return ResponseEntity.ok(productoService.findByOwnerId(userOpt.get().getId()));
+        return ResponseEntity.ok(productoService.findByOwnerId(usuarioIdOpt.get()));
+    }
+
+    @GetMapping("/mine/resumen")
+    public ResponseEntity<?> getMyProductsResumen(@AuthenticationPrincipal Jwt jwt) {
+        var usuarioIdOpt = usuarioIdCache.resolverId(jwt.getClaimAsString("sub"));
+        if (usuarioIdOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of(
+                    "error", "USER_NOT_PROVISIONED",
+                    "message", "Provisiona primero tu usuario."
+                ));
+        }
+        return ResponseEntity.ok(productoService.listarResumenPorOwner(usuarioIdOpt.get()));
     }
 
     // ---------- CREATE ----------
@@ -74,8 +133,8 @@ public class ProductoController {
         }
 
         String sub = jwt.getClaimAsString("sub");
-        var userOpt = usuarioRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
+        var usuarioIdOpt = usuarioIdCache.resolverId(sub);
+        if (usuarioIdOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of(
                     "error", "USER_NOT_PROVISIONED",
@@ -83,7 +142,7 @@ public class ProductoController {
                 ));
         }
 
-        Usuario owner = userOpt.get();
+        Usuario owner = usuarioIdCache.referencia(sub);
 
         Producto p = new Producto();
         p.setTitulo(dto.getTitulo());
@@ -98,7 +157,7 @@ public class ProductoController {
             p.setImagenesUrl(dto.getImagenesUrl());
         } else if (dto.getImagenUrl() != null && !dto.getImagenUrl().isBlank()) {
             // Retrocompatibilidad: si envía imagenUrl (singular)
-            p.getImagenesUrl().add(dto.getImagenUrl());
+            p.setImagenesUrl(List.of(dto.getImagenUrl()));
         }
         
         // 🔥 AGREGAR ESTA LÍNEA:
@@ -131,8 +190,8 @@ public class ProductoController {
         }
 
         String sub = jwt.getClaimAsString("sub");
-        var userOpt = usuarioRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
+        var usuarioIdOpt = usuarioIdCache.resolverId(sub);
+        if (usuarioIdOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of(
                     "error", "USER_NOT_PROVISIONED",
@@ -142,7 +201,7 @@ public class ProductoController {
 
         var existing = existingOpt.get();
         // Solo el dueño puede actualizar
-        if (!userOpt.get().getId().equals(existing.getOwner().getId())) {
+        if (!usuarioIdOpt.get().equals(existing.getOwner().getId())) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
@@ -157,8 +216,7 @@ public class ProductoController {
         if (dto.getImagenesUrl() != null && !dto.getImagenesUrl().isEmpty()) {
             existing.setImagenesUrl(dto.getImagenesUrl());
         } else if (dto.getImagenUrl() != null && !dto.getImagenUrl().isBlank()) {
-            existing.getImagenesUrl().clear();
-            existing.getImagenesUrl().add(dto.getImagenUrl());
+            existing.setImagenesUrl(List.of(dto.getImagenUrl()));
         }
         // 🔥 AGREGAR ESTA LÍNEA:
         existing.setWhatsappContacto(dto.getWhatsappContacto());
@@ -176,8 +234,8 @@ public class ProductoController {
         }
 
         String sub = jwt.getClaimAsString("sub");
-        var userOpt = usuarioRepository.findByAuth0Sub(sub);
-        if (userOpt.isEmpty()) {
+        var usuarioIdOpt = usuarioIdCache.resolverId(sub);
+        if (usuarioIdOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of(
                     "error", "USER_NOT_PROVISIONED",
@@ -187,7 +245,7 @@ public class ProductoController {
 
         var existing = existingOpt.get();
         // Solo el dueño puede borrar
-        if (!userOpt.get().getId().equals(existing.getOwner().getId())) {
+        if (!usuarioIdOpt.get().equals(existing.getOwner().getId())) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
@@ -207,8 +265,14 @@ public class ProductoController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/_cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(productoDetalleCache.estadisticas());
+    }
+
     @GetMapping("/_count")
-    public long count() {
-        return productoService.getProductos().size();
+    public long count(@RequestParam(required = false) String categoria,
+                      @RequestParam(required = false) String estado) {
+        return productoService.contarProductos(categoria, estado);
     }
 }
\ No newline at end of file
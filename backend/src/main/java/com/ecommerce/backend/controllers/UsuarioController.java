@@ -12,6 +12,8 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import com.ecommerce.backend.cache.CarritoCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
 import com.ecommerce.backend.dto.UsuarioCreateDTO;
 import com.ecommerce.backend.entities.Usuario;
 import com.ecommerce.backend.repositories.UsuarioRepository;
@@ -28,6 +30,8 @@ public class UsuarioController {
 
   private final UsuarioService usuarioService;
   private final UsuarioRepository usuarioRepository;
+  private final UsuarioIdCache usuarioIdCache;
+  private final CarritoCache carritoCache;
 
   @GetMapping("/me")
   public ResponseEntity<Usuario> me(@AuthenticationPrincipal Jwt jwt) {
@@ -59,6 +63,7 @@ public class UsuarioController {
     u.setPictureUrl(dto.getPictureUrl());
 
     Usuario saved = usuarioRepository.save(u);
+    usuarioIdCache.registrar(saved);
     return ResponseEntity.status(HttpStatus.CREATED).body(saved);
   }
 
@@ -82,6 +87,8 @@ public class UsuarioController {
 
     try {
       usuarioRepository.deleteById(existing.get().getId());
+      usuarioIdCache.invalidar(sub);
+      carritoCache.invalidar(sub);
       return ResponseEntity.noContent().build();
     } catch (DataIntegrityViolationException dive) {
       return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -99,6 +106,8 @@ public class UsuarioController {
 
     try {
       usuarioRepository.deleteById(id);
+      usuarioIdCache.invalidar(existing.get().getAuth0Sub());
+      carritoCache.invalidar(existing.get().getAuth0Sub());
       return ResponseEntity.noContent().build();
     } catch (DataIntegrityViolationException dive) {
 
@@ -0,0 +1,15 @@
+package com.ecommerce.backend.dto;
+
+/**
+ * Línea del resumen del carrito, leída como proyección (carritos JOIN productos)
+ * sin hidratar las entidades Carrito ni Producto.
+ */
+public interface CarritoItemResumen {
+    Long getProductoId();
+    String getTitulo();
+    Double getPrecio();
+    Integer getCantidad();
+    Double getSubtotal();
+    String getImagenPrincipal();
+    Integer getStockDisponible();
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.backend.dto;
+
+import com.ecommerce.backend.entities.Carrito;
+import com.ecommerce.backend.entities.Producto;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Línea del carrito tal como se cachea y se devuelve en GET /api/carritos.
+ * Inmutable: se copia de la entidad al armar la foto y no queda atada a ningún persistence context.
+ */
+@Value
+public class CarritoLineaDto {
+
+    Long id;
+    Long usuarioId;
+    Long productoId;
+    Integer cantidad;
+    Instant agregadoEn;
+    Instant actualizadoEn;
+    Double subtotal;
+    ProductoCarrito producto;
+
+    @Value
+    public static class ProductoCarrito {
+        Long id;
+        String titulo;
+        String categoria;
+        String estado;
+        Double precio;
+        Integer stock;
+        Integer stockDisponible;
+        String imagenPrincipal;
+        List<String> imagenesUrl;
+        Long ownerId;
+    }
+
+    public static CarritoLineaDto desde(Carrito carrito) {
+        Producto p = carrito.getProducto();
+        List<String> imagenes = Collections.unmodifiableList(new ArrayList<>(p.getImagenesUrl()));
+        ProductoCarrito producto = new ProductoCarrito(p.getId(), p.getTitulo(), p.getCategoria(), p.getEstado(),
+                p.getPrecio(), p.getStock(), p.getStockDisponible(), p.getImagenPrincipal(), imagenes, p.getOwnerId());
+        return new CarritoLineaDto(carrito.getId(), carrito.getUsuarioId(), carrito.getProductoId(),
+                carrito.getCantidad(), carrito.getAgregadoEn(), carrito.getActualizadoEn(),
+                carrito.getSubtotal(), producto);
+    }
+}
@@ -0,0 +1,61 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Resumen del carrito: líneas + totales, armado desde una sola consulta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoResumenDto {
+
+    private int cantidadProductos;
+    private long cantidadTotalItems;
+    private double total;
+    private List<CarritoItemResumen> items;
+
+    public static CarritoResumenDto desde(List<CarritoItemResumen> items) {
+        long cantidadTotal = 0;
+        double total = 0.0;
+        for (CarritoItemResumen item : items) {
+            cantidadTotal += item.getCantidad();
+            total += item.getSubtotal();
+        }
+        return new CarritoResumenDto(items.size(), cantidadTotal, total, items);
+    }
+
+    /**
+     * Arma el resumen a partir de las líneas de la foto del carrito
+     */
+    public static CarritoResumenDto desdeLineas(List<CarritoLineaDto> lineas) {
+        return desde(lineas.stream().<CarritoItemResumen>map(Linea::new).toList());
+    }
+
+    @Value
+    private static class Linea implements CarritoItemResumen {
+        Long productoId;
+        String titulo;
+        Double precio;
+        Integer cantidad;
+        Double subtotal;
+        String imagenPrincipal;
+        Integer stockDisponible;
+
+        Linea(CarritoLineaDto linea) {
+            CarritoLineaDto.ProductoCarrito producto = linea.getProducto();
+            this.productoId = producto.getId();
+            this.titulo = producto.getTitulo();
+            this.precio = producto.getPrecio();
+            this.cantidad = linea.getCantidad();
+            this.subtotal = linea.getSubtotal();
+            this.imagenPrincipal = producto.getImagenPrincipal();
+            this.stockDisponible = producto.getStockDisponible();
+        }
+    }
+}
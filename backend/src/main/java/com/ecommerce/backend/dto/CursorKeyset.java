@@ -0,0 +1,38 @@
+package com.ecommerce.backend.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Posición (creadoEn, id) de la última fila de una página ordenada por creadoEn DESC, id DESC.
+ * Se envía al cliente como cursor opaco: "segundos:nanos:id" en Base64 URL-safe.
+ */
+public record CursorKeyset(Instant creadoEn, Long id) {
+
+    public static String codificar(Instant creadoEn, Long id) {
+        String raw = creadoEn.getEpochSecond() + ":" + creadoEn.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Devuelve null si el cursor viene vacío (primera página)
+     */
+    public static CursorKeyset decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = raw.split(":");
+            if (partes.length != 3) {
+                throw new IllegalArgumentException("Cursor de paginación inválido");
+            }
+            Instant creadoEn = Instant.ofEpochSecond(Long.parseLong(partes[0]), Long.parseLong(partes[1]));
+            return new CursorKeyset(creadoEn, Long.parseLong(partes[2]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException y errores de Base64 también son IllegalArgumentException
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.backend.dto;
+
+/**
+ * Stock disponible de un producto junto con la cantidad que el usuario ya tiene en su carrito
+ */
+public interface DisponibilidadCarrito {
+    Long getProductoId();
+    Integer getStockDisponible();
+    Integer getEnCarrito();
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estado resultante de una operación sobre favoritos.
+ * cambio = false indica que el favorito ya estaba en ese estado (p. ej. doble click).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoFavoritoDto {
+    private Long productoId;
+    private boolean esFavorito;
+    private boolean cambio;
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado de fusionar el carrito de invitado: el carrito final y qué productos no entraron completos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FusionCarritoResultadoDto {
+    private CarritoResumenDto carrito;
+    private List<Long> ajustados;   // cantidad recortada al stock disponible
+    private List<Long> omitidos;    // producto inexistente o sin stock
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Carrito armado como invitado (guardado en el cliente) que se fusiona al iniciar sesión
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FusionarCarritoDto {
+
+    @NotEmpty(message = "El carrito a fusionar está vacío")
+    @Size(max = 100, message = "Máximo 100 productos por carrito")
+    private List<@Valid AgregarCarritoDto> items;
+}
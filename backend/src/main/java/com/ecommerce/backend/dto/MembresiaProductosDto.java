@@ -0,0 +1,18 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * De los productos consultados, cuáles están en favoritos y cuáles en el carrito del usuario
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembresiaProductosDto {
+    private Set<Long> favoritos;
+    private Set<Long> enCarrito;
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lote de cambios al carrito aplicado en una sola transacción.
+ * Las operaciones se aplican en el orden recibido.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperacionesCarritoDto {
+
+    @NotEmpty(message = "Debe enviar al menos una operación")
+    @Size(max = 100, message = "Máximo 100 operaciones por lote")
+    private List<@Valid Operacion> operaciones;
+
+    public enum TipoOperacion {
+        AGREGAR,     // suma la cantidad a la existente (o crea la línea)
+        ESTABLECER,  // fija la cantidad (o crea la línea)
+        ELIMINAR     // quita la línea si existe
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operacion {
+        @NotNull(message = "El tipo de operación es obligatorio")
+        private TipoOperacion tipo;
+
+        @NotNull(message = "El ID del producto es obligatorio")
+        private Long productoId;
+
+        private Integer cantidad;
+    }
+}
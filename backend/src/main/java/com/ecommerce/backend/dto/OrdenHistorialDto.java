@@ -0,0 +1,32 @@
+package com.ecommerce.backend.dto;
+
+import com.ecommerce.backend.entities.Orden;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Orden del historial del comprador: cabecera + líneas con producto resumido
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenHistorialDto {
+
+    private Long id;
+    private String numeroOrden;
+    private String estado;
+    private Double total;
+    private String metodoPago;
+    private Instant creadoEn;
+    private Instant pagadoEn;
+    private List<OrdenItemResumen> items;
+
+    public static OrdenHistorialDto desde(Orden orden, List<OrdenItemResumen> items) {
+        return new OrdenHistorialDto(orden.getId(), orden.getNumeroOrden(), orden.getEstado(), orden.getTotal(),
+                orden.getMetodoPago(), orden.getCreadoEn(), orden.getPagadoEn(), items);
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.backend.dto;
+
+/**
+ * Línea de orden con datos mínimos del producto (proyección, sin hidratar Producto)
+ */
+public interface OrdenItemResumen {
+    Long getOrdenId();
+    Long getProductoId();
+    String getTitulo();
+    String getImagenPrincipal();
+    Integer getCantidad();
+    Double getPrecioUnitario();
+    Double getSubtotal();
+}
@@ -0,0 +1,33 @@
+package com.ecommerce.backend.dto;
+
+import com.ecommerce.backend.entities.Orden;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Orden vista por un vendedor: cabecera sin datos del comprador y solo sus propias líneas
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrdenVendedorDto {
+
+    private Long id;
+    private String numeroOrden;
+    private String estado;
+    private Instant creadoEn;
+    private Instant pagadoEn;
+    // Suma de las líneas del vendedor (no el total de la orden)
+    private Double subtotal;
+    private List<OrdenItemResumen> items;
+
+    public static OrdenVendedorDto desde(Orden orden, List<OrdenItemResumen> items) {
+        double subtotal = items.stream().mapToDouble(OrdenItemResumen::getSubtotal).sum();
+        return new OrdenVendedorDto(orden.getId(), orden.getNumeroOrden(), orden.getEstado(),
+                orden.getCreadoEn(), orden.getPagadoEn(), subtotal, items);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de resultados con paginación por cursor (keyset).
+ * siguienteCursor es opaco para el cliente: se reenvía tal cual para pedir la página siguiente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDto<T> {
+    private List<T> items;
+    private String siguienteCursor;
+    private boolean hayMas;
+}
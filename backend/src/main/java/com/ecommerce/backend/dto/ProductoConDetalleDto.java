@@ -19,6 +19,8 @@ public class ProductoConDetalleDto {
     private String descripcion;
     private Double precio;
     private Integer stock;
+    private Integer stockDisponible;
+    private Long favoritosCount;
     private List<String> imagenesUrl;
     private String imagenPrincipal;
     private String whatsappContacto;
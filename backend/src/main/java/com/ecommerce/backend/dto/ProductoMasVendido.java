@@ -0,0 +1,14 @@
+package com.ecommerce.backend.dto;
+
+/**
+ * Fila del ranking de productos más vendidos de un vendedor (agregada en SQL sobre orden_items)
+ */
+public interface ProductoMasVendido {
+    Long getId();
+    String getNombre();
+    Double getPrecio();
+    String getImagenPrincipal();
+    Integer getStock();
+    Long getCantidadVendida();
+    Double getTotalVendido();
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.backend.dto;
+
+/**
+ * Proyección liviana para grillas de tarjetas (catálogo y "mis productos").
+ * Se llena directo desde las columnas seleccionadas: sin entidad, sin persistence context
+ * y sin descripción ni arreglo completo de imágenes.
+ */
+public interface ProductoResumen {
+    Long getId();
+    String getTitulo();
+    Double getPrecio();
+    Integer getStock();
+    String getCategoria();
+    String getImagenPrincipal();
+    Long getOwnerId();
+    Long getFavoritosCount();
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ecommerce.backend.entities.Producto;
+
+/**
+ * Página de productos filtrados + conteos por faceta.
+ * Cada faceta se cuenta aplicando los demás filtros, pero no el suyo propio,
+ * para que el usuario vea cuántos resultados obtendría al cambiar esa selección.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductosFiltradosDto {
+
+    private List<Producto> items;
+    private String siguienteCursor;
+    private boolean hayMas;
+    private Facetas facetas;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Facetas {
+        private Map<String, Long> categorias;
+        private Map<String, Long> estados;
+        private List<RangoPrecio> rangosPrecio;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RangoPrecio {
+        private int rango;
+        private Double desde;   // null = sin límite inferior
+        private Double hasta;   // null = sin límite superior (exclusivo)
+        private long cantidad;
+    }
+}
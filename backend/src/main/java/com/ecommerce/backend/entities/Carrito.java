@@ -20,7 +20,8 @@ import lombok.NoArgsConstructor;
     },
     indexes = {
         @Index(name = "idx_carritos_usuario", columnList = "id_usuario"),
-        @Index(name = "idx_carritos_producto", columnList = "id_producto")
+        @Index(name = "idx_carritos_producto", columnList = "id_producto"),
+        @Index(name = "idx_carritos_actualizado", columnList = "actualizado_en")
     }
 )
 @NoArgsConstructor
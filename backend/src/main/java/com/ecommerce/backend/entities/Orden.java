@@ -9,16 +9,19 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "ordenes")
+@Table(
+    name = "ordenes",
+    indexes = {
+        @Index(name = "idx_ordenes_comprador_creado", columnList = "comprador_sub, creado_en, id_orden"),
+        @Index(name = "idx_ordenes_creado", columnList = "creado_en")
+    }
+)
 public class Orden {
     
     @Id
@@ -80,9 +83,8 @@ public class Orden {
             creadoEn = Instant.now();
         }
         if (numeroOrden == null) {
-            String fecha = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-            String random = UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-            this.numeroOrden = "ORD-" + fecha + "-" + random;
+            // Lo asigna GeneradorNumeroOrden en el servicio: un valor aleatorio aquí podría repetirse
+            throw new IllegalStateException("La orden no tiene número asignado");
         }
         if ((compradorSub == null || compradorSub.isBlank()) && comprador != null && comprador.getAuth0Sub() != null) {
             this.compradorSub = comprador.getAuth0Sub();
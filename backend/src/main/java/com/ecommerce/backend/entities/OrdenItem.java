@@ -12,7 +12,13 @@ import java.time.Instant;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "orden_items")
+@Table(
+    name = "orden_items",
+    indexes = {
+        @Index(name = "idx_orden_items_orden", columnList = "id_orden"),
+        @Index(name = "idx_orden_items_vendedor", columnList = "vendedor_sub, id_orden")
+    }
+)
 public class OrdenItem {
     
     @Id
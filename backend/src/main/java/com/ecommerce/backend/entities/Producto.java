@@ -2,24 +2,29 @@ package com.ecommerce.backend.entities;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
-@Slf4j
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "productos")
+@Table(
+    name = "productos",
+    indexes = {
+        @Index(name = "idx_productos_creado_id", columnList = "creado_en, id_producto"),
+        @Index(name = "idx_productos_usuario", columnList = "id_usuario")
+    }
+)
 public class Producto {
 
     @Id
@@ -47,20 +52,28 @@ public class Producto {
     @Column(nullable = false)
     private Integer stock = 1;
 
+    // Unidades retenidas por reservas activas (solo se modifica con UPDATE atómicos, nunca desde la entidad)
+    @ColumnDefault("0")
+    @Column(name = "stock_reservado", nullable = false, insertable = false, updatable = false)
+    private Integer stockReservado = 0;
+
+    // Conteo desnormalizado de favoritos (lo mantiene ContadorFavoritosService, nunca la entidad)
+    @ColumnDefault("0")
+    @Column(name = "favoritos_count", nullable = false, insertable = false, updatable = false)
+    private Long favoritosCount = 0L;
+
     @Column(name = "whatsapp_contacto", length = 20)
     private String whatsappContacto;
 
-    // ✅ Campo JSON para almacenar múltiples imágenes en una sola columna
-    @Column(name = "imagenes_json", columnDefinition = "TEXT")
-    private String imagenesJson;
-
-    // Campo transitorio (no se guarda en BD, se usa en memoria)
-    @Transient
-    private List<String> imagenesUrl = new ArrayList<>();
+    // ✅ URLs de imágenes en un arreglo nativo de Postgres (text[]): el driver lo lee sin pasar por Jackson
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "imagenes", columnDefinition = "text[]")
+    private String[] imagenes;
 
-    // ObjectMapper estático para conversiones JSON
+    // Vista de lista (no se guarda en BD); se arma solo cuando alguien la pide
     @Transient
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private List<String> imagenesUrl;
 
     @NotBlank
     @Column(name = "categoria", nullable = false, length = 80)
@@ -92,73 +105,46 @@ public class Producto {
         if ((ownerSub == null || ownerSub.isBlank()) && owner != null && owner.getAuth0Sub() != null) {
             ownerSub = owner.getAuth0Sub();
         }
-        convertirImagenesAJson();
+        sincronizarImagenes();
     }
 
     @PreUpdate
     public void preUpdate() {
         actualizadoEn = Instant.now();
-        convertirImagenesAJson();
+        sincronizarImagenes();
     }
 
-    @PostLoad
-    public void postLoad() {
-        convertirJsonAImagenes();
-    }
-
-    // ============ CONVERSIÓN JSON ↔ LIST ============
-
-    /**
-     * Convierte la lista imagenesUrl a JSON antes de guardar en BD
-     */
-    private void convertirImagenesAJson() {
-        try {
-            if (imagenesUrl != null && !imagenesUrl.isEmpty()) {
-                imagenesJson = objectMapper.writeValueAsString(imagenesUrl);
-                log.debug("📦 Convertido a JSON: {} imágenes", imagenesUrl.size());
-            } else {
-                imagenesJson = "[]";
-            }
-        } catch (JsonProcessingException e) {
-            log.error("❌ Error al convertir imágenes a JSON", e);
-            imagenesJson = "[]";
-        }
-    }
+    // ============ IMÁGENES: ARRAY ↔ LIST ============
 
     /**
-     * Convierte el JSON a lista después de cargar de BD
+     * Copia la lista (si fue materializada y modificada en sitio) al arreglo persistido
      */
-    private void convertirJsonAImagenes() {
-        try {
-            if (imagenesJson != null && !imagenesJson.isBlank() && !imagenesJson.equals("[]")) {
-                imagenesUrl = objectMapper.readValue(imagenesJson, new TypeReference<List<String>>() {});
-                log.debug("📂 Cargado desde JSON: {} imágenes", imagenesUrl.size());
-            } else {
-                imagenesUrl = new ArrayList<>();
-            }
-        } catch (JsonProcessingException e) {
-            log.error("❌ Error al parsear JSON de imágenes: {}", imagenesJson, e);
-            imagenesUrl = new ArrayList<>();
+    private void sincronizarImagenes() {
+        if (imagenesUrl != null) {
+            imagenes = imagenesUrl.toArray(String[]::new);
+        } else if (imagenes == null) {
+            imagenes = new String[0];
         }
     }
 
     // ============ GETTERS/SETTERS PERSONALIZADOS ============
 
     /**
-     * Getter que asegura que imagenesUrl esté cargado
+     * Devuelve la lista de imágenes, construida de forma perezosa desde el arreglo
      */
     public List<String> getImagenesUrl() {
-        if (imagenesUrl == null || (imagenesUrl.isEmpty() && imagenesJson != null && !imagenesJson.equals("[]"))) {
-            convertirJsonAImagenes();
+        if (imagenesUrl == null) {
+            imagenesUrl = imagenes != null ? new ArrayList<>(Arrays.asList(imagenes)) : new ArrayList<>();
         }
         return imagenesUrl;
     }
 
     /**
-     * Setter que marca para conversión
+     * Setter que actualiza también el arreglo persistido (para que Hibernate detecte el cambio)
      */
     public void setImagenesUrl(List<String> imagenesUrl) {
-        this.imagenesUrl = imagenesUrl != null ? imagenesUrl : new ArrayList<>();
+        this.imagenesUrl = imagenesUrl != null ? new ArrayList<>(imagenesUrl) : new ArrayList<>();
+        this.imagenes = this.imagenesUrl.toArray(String[]::new);
     }
 
     public String getWhatsappContacto() {
@@ -186,20 +172,29 @@ public class Producto {
         return (owner != null ? owner.getId() : null);
     }
 
+    @JsonIgnore
+    public Integer getStockReservado() {
+        return stockReservado;
+    }
+
     /**
-     * Devuelve la primera imagen como imagen principal
+     * Stock disponible para la venta: stock menos lo retenido por reservas activas
      */
-    @JsonProperty("imagenPrincipal")
-    public String getImagenPrincipal() {
-        List<String> imgs = getImagenesUrl();
-        return (imgs != null && !imgs.isEmpty()) ? imgs.get(0) : null;
+    @JsonProperty("stockDisponible")
+    public Integer getStockDisponible() {
+        int actual = stock != null ? stock : 0;
+        int reservado = stockReservado != null ? stockReservado : 0;
+        return Math.max(actual - reservado, 0);
     }
 
     /**
-     * IMPORTANTE: No exponer imagenesJson en el API
+     * Devuelve la primera imagen como imagen principal (sin construir la lista)
      */
-    @JsonIgnore
-    public String getImagenesJson() {
-        return imagenesJson;
+    @JsonProperty("imagenPrincipal")
+    public String getImagenPrincipal() {
+        if (imagenesUrl != null) {
+            return imagenesUrl.isEmpty() ? null : imagenesUrl.get(0);
+        }
+        return (imagenes != null && imagenes.length > 0) ? imagenes[0] : null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.backend.entities;
+
+import java.time.Instant;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reserva temporal de stock asociada a una orden PENDIENTE.
+ * Mientras existe, su cantidad está sumada en productos.stock_reservado.
+ * Se elimina al pagar la orden (la reserva se convierte en venta) o al expirar.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(
+    name = "reservas_stock",
+    indexes = {
+        @Index(name = "idx_reservas_orden", columnList = "id_orden"),
+        @Index(name = "idx_reservas_expira", columnList = "expira_en")
+    }
+)
+public class ReservaStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_reserva")
+    private Long id;
+
+    @Column(name = "id_orden", nullable = false)
+    private Long ordenId;
+
+    @Column(name = "id_producto", nullable = false)
+    private Long productoId;
+
+    @Column(name = "cantidad", nullable = false)
+    private Integer cantidad;
+
+    @Column(name = "creado_en", nullable = false, updatable = false)
+    private Instant creadoEn = Instant.now();
+
+    @Column(name = "expira_en", nullable = false)
+    private Instant expiraEn;
+}
@@ -0,0 +1,49 @@
+package com.ecommerce.backend.entities;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ventas agregadas de un vendedor en un día y estado de orden (tabla de resumen).
+ * Solo la escribe ResumenVentasService con UPSERTs; el día es el de creación de la orden.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(
+    name = "ventas_vendedor_diarias",
+    uniqueConstraints = {
+        @UniqueConstraint(
+            name = "uk_ventas_vendedor_dia",
+            columnNames = {"vendedor_sub", "fecha", "estado"}
+        )
+    }
+)
+public class VentaVendedorDiaria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_venta_diaria")
+    private Long id;
+
+    @Column(name = "vendedor_sub", nullable = false, length = 128)
+    private String vendedorSub;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDate fecha;
+
+    @Column(name = "estado", nullable = false, length = 20)
+    private String estado;
+
+    @Column(name = "ordenes", nullable = false)
+    private Long ordenes = 0L;
+
+    @Column(name = "unidades", nullable = false)
+    private Long unidades = 0L;
+
+    @Column(name = "ingresos", nullable = false)
+    private Double ingresos = 0.0;
+}
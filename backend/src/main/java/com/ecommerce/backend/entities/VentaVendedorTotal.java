@@ -0,0 +1,44 @@
+package com.ecommerce.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ventas históricas acumuladas de un vendedor por estado de orden (una fila por estado).
+ * Se mantiene junto con VentaVendedorDiaria para no sumar toda la historia en cada consulta.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(
+    name = "ventas_vendedor_totales",
+    uniqueConstraints = {
+        @UniqueConstraint(
+            name = "uk_ventas_vendedor_total",
+            columnNames = {"vendedor_sub", "estado"}
+        )
+    }
+)
+public class VentaVendedorTotal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_venta_total")
+    private Long id;
+
+    @Column(name = "vendedor_sub", nullable = false, length = 128)
+    private String vendedorSub;
+
+    @Column(name = "estado", nullable = false, length = 20)
+    private String estado;
+
+    @Column(name = "ordenes", nullable = false)
+    private Long ordenes = 0L;
+
+    @Column(name = "unidades", nullable = false)
+    private Long unidades = 0L;
+
+    @Column(name = "ingresos", nullable = false)
+    private Double ingresos = 0.0;
+}
@@ -44,9 +44,10 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(StockInsuficienteException.class)
     public ResponseEntity<MensajeResponse> handleStockInsuficiente(StockInsuficienteException ex) {
         log.error("❌ Stock insuficiente: {}", ex.getMessage());
+        Object productos = ex.getProductosIds().isEmpty() ? null : ex.getProductosIds();
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
-                .body(new MensajeResponse(ex.getMessage()));
+                .body(new MensajeResponse(ex.getMessage(), productos));
     }
 
     /**
@@ -1,7 +1,22 @@
 package com.ecommerce.backend.exceptions;
 
+import java.util.List;
+
 public class StockInsuficienteException extends RuntimeException {
+
+    // IDs de los productos sin stock suficiente (vacío si no aplica)
+    private final List<Long> productosIds;
+
     public StockInsuficienteException(String mensaje) {
+        this(mensaje, List.of());
+    }
+
+    public StockInsuficienteException(String mensaje, List<Long> productosIds) {
         super(mensaje);
+        this.productosIds = productosIds != null ? List.copyOf(productosIds) : List.of();
+    }
+
+    public List<Long> getProductosIds() {
+        return productosIds;
     }
-}
\ No newline at end of file
+}
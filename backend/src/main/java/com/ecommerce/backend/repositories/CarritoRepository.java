@@ -1,5 +1,7 @@
 package com.ecommerce.backend.repositories;
 
+import com.ecommerce.backend.dto.CarritoItemResumen;
+import com.ecommerce.backend.dto.DisponibilidadCarrito;
 import com.ecommerce.backend.entities.Carrito;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -7,9 +9,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Todas las consultas por usuario filtran por la FK id_usuario (índice idx_carritos_usuario);
+ * el id se resuelve desde el auth0Sub con UsuarioIdCache, sin JOIN a usuarios.
+ */
 @Repository
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
 
@@ -20,73 +27,68 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     List<Carrito> findByUsuarioIdOrderByAgregadoEnDesc(@Param("usuarioId") Long usuarioId);
 
     /**
-     * Encuentra todos los carritos de un usuario por auth0Sub
+     * Líneas del carrito con producto y usuario ya inicializados (para la foto cacheada del carrito)
      */
-    @Query("SELECT c FROM Carrito c JOIN FETCH c.producto WHERE c.usuario.auth0Sub = :auth0Sub ORDER BY c.agregadoEn DESC")
-    List<Carrito> findByUsuarioAuth0SubOrderByAgregadoEnDesc(@Param("auth0Sub") String auth0Sub);
+    @Query("SELECT c FROM Carrito c JOIN FETCH c.producto JOIN FETCH c.usuario WHERE c.usuario.id = :usuarioId ORDER BY c.agregadoEn DESC")
+    List<Carrito> findSnapshotByUsuarioId(@Param("usuarioId") Long usuarioId);
 
     /**
      * Verifica si un producto está en carritos de un usuario
      */
     boolean existsByUsuario_IdAndProducto_Id(Long usuarioId, Long productoId);
 
-    /**
-     * Verifica si un producto está en carritos (por auth0Sub)
-     */
-    @Query("SELECT CASE WHEN COUNT(c) > 0 THEN true ELSE false END FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub AND c.producto.id = :productoId")
-    boolean existsByAuth0SubAndProductoId(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId);
-
     /**
      * Encuentra un carrito específico
      */
     Optional<Carrito> findByUsuario_IdAndProducto_Id(Long usuarioId, Long productoId);
 
     /**
-     * Encuentra un carrito específico (por auth0Sub)
-     */
-    @Query("SELECT c FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub AND c.producto.id = :productoId")
-    Optional<Carrito> findByAuth0SubAndProductoId(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId);
-
-    /**
-     * Cuenta cuántos carritos tiene un usuario
-     */
-    long countByUsuario_Id(Long usuarioId);
-
-    /**
-     * Cuenta cuántos carritos tiene un usuario (por auth0Sub)
+     * Encuentra las líneas de un usuario para un conjunto de productos (una consulta IN)
      */
-    @Query("SELECT COUNT(c) FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub")
-    long countByAuth0Sub(@Param("auth0Sub") String auth0Sub);
+    List<Carrito> findByUsuario_IdAndProducto_IdIn(Long usuarioId, Collection<Long> productosIds);
 
     /**
-     * Elimina todos los carritos de un usuario
+     * Stock disponible de varios productos y lo que el usuario ya tiene de cada uno (una consulta IN)
      */
-    void deleteByUsuario_Id(Long usuarioId);
+    @Query(value = "SELECT p.id_producto AS productoId, GREATEST(p.stock - p.stock_reservado, 0) AS stockDisponible, " +
+                   "COALESCE(c.cantidad, 0) AS enCarrito " +
+                   "FROM productos p " +
+                   "LEFT JOIN carritos c ON c.id_producto = p.id_producto AND c.id_usuario = :usuarioId " +
+                   "WHERE p.id_producto IN (:productosIds)",
+           nativeQuery = true)
+    List<DisponibilidadCarrito> findDisponibilidad(@Param("usuarioId") Long usuarioId,
+                                                   @Param("productosIds") Collection<Long> productosIds);
 
     /**
-     * Elimina todos los carritos de un usuario (por auth0Sub)
+     * Cuenta cuántos carritos tiene un usuario
      */
-    @Modifying
-    @Query("DELETE FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub")
-    void deleteByAuth0Sub(@Param("auth0Sub") String auth0Sub);
+    long countByUsuario_Id(Long usuarioId);
 
     /**
-     * Elimina un carrito específico (por auth0Sub y productoId)
+     * Elimina todos los carritos de un usuario (un solo DELETE)
      */
     @Modifying
-    @Query("DELETE FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub AND c.producto.id = :productoId")
-    void deleteByAuth0SubAndProductoId(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId);
+    @Query("DELETE FROM Carrito c WHERE c.usuario.id = :usuarioId")
+    void deleteByUsuarioId(@Param("usuarioId") Long usuarioId);
 
     /**
-     * Actualiza la cantidad de un carrito
+     * Elimina varias líneas del carrito de un usuario (un solo DELETE ... IN)
      */
     @Modifying
-    @Query("UPDATE Carrito c SET c.cantidad = :cantidad, c.actualizadoEn = CURRENT_TIMESTAMP WHERE c.usuario.auth0Sub = :auth0Sub AND c.producto.id = :productoId")
-    void actualizarCantidad(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId, @Param("cantidad") Integer cantidad);
+    @Query("DELETE FROM Carrito c WHERE c.usuario.id = :usuarioId AND c.producto.id IN :productosIds")
+    int deleteByUsuarioIdAndProductoIdIn(@Param("usuarioId") Long usuarioId,
+                                         @Param("productosIds") Collection<Long> productosIds);
 
     /**
-     * Calcula el total del carrito de un usuario
+     * Líneas del carrito con datos del producto en una sola consulta (proyección, sin entidades)
      */
-    @Query("SELECT COALESCE(SUM(c.producto.precio * c.cantidad), 0) FROM Carrito c WHERE c.usuario.auth0Sub = :auth0Sub")
-    Double calcularTotal(@Param("auth0Sub") String auth0Sub);
-}
\ No newline at end of file
+    @Query(value = "SELECT c.id_producto AS productoId, p.titulo AS titulo, p.precio AS precio, " +
+                   "c.cantidad AS cantidad, p.precio * c.cantidad AS subtotal, " +
+                   "p.imagenes[1] AS imagenPrincipal, GREATEST(p.stock - p.stock_reservado, 0) AS stockDisponible " +
+                   "FROM carritos c " +
+                   "JOIN productos p ON p.id_producto = c.id_producto " +
+                   "WHERE c.id_usuario = :usuarioId " +
+                   "ORDER BY c.agregado_en DESC",
+           nativeQuery = true)
+    List<CarritoItemResumen> findResumenByUsuarioId(@Param("usuarioId") Long usuarioId);
+}
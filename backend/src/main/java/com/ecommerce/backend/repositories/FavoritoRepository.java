@@ -2,13 +2,19 @@ package com.ecommerce.backend.repositories;
 
 import com.ecommerce.backend.entities.Favorito;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Todas las consultas por usuario filtran por la FK id_usuario (índice idx_favoritos_usuario);
+ * el id se resuelve desde el auth0Sub con UsuarioIdCache, sin JOIN a usuarios.
+ */
 @Repository
 public interface FavoritoRepository extends JpaRepository<Favorito, Long> {
 
@@ -19,21 +25,22 @@ public interface FavoritoRepository extends JpaRepository<Favorito, Long> {
     List<Favorito> findByUsuarioIdOrderByAgregadoEnDesc(@Param("usuarioId") Long usuarioId);
 
     /**
-     * Encuentra todos los favoritos de un usuario por auth0Sub
+     * IDs de productos favoritos de un usuario (sin cargar entidades)
      */
-    @Query("SELECT f FROM Favorito f JOIN FETCH f.producto WHERE f.usuario.auth0Sub = :auth0Sub ORDER BY f.agregadoEn DESC")
-    List<Favorito> findByUsuarioAuth0SubOrderByAgregadoEnDesc(@Param("auth0Sub") String auth0Sub);
+    @Query("SELECT f.producto.id FROM Favorito f WHERE f.usuario.id = :usuarioId ORDER BY f.agregadoEn DESC")
+    List<Long> findProductoIdsByUsuarioId(@Param("usuarioId") Long usuarioId);
 
     /**
-     * Verifica si un producto está en favoritos de un usuario
+     * De un conjunto de productos, cuáles son favoritos del usuario (índice uk_favoritos_usuario_producto)
      */
-    boolean existsByUsuario_IdAndProducto_Id(Long usuarioId, Long productoId);
+    @Query("SELECT f.producto.id FROM Favorito f WHERE f.usuario.id = :usuarioId AND f.producto.id IN :productosIds")
+    List<Long> findProductoIdsFavoritos(@Param("usuarioId") Long usuarioId,
+                                        @Param("productosIds") Collection<Long> productosIds);
 
     /**
-     * Verifica si un producto está en favoritos (por auth0Sub)
+     * Verifica si un producto está en favoritos de un usuario
      */
-    @Query("SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM Favorito f WHERE f.usuario.auth0Sub = :auth0Sub AND f.producto.id = :productoId")
-    boolean existsByAuth0SubAndProductoId(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId);
+    boolean existsByUsuario_IdAndProducto_Id(Long usuarioId, Long productoId);
 
     /**
      * Encuentra un favorito específico
@@ -41,10 +48,39 @@ public interface FavoritoRepository extends JpaRepository<Favorito, Long> {
     Optional<Favorito> findByUsuario_IdAndProducto_Id(Long usuarioId, Long productoId);
 
     /**
-     * Encuentra un favorito específico (por auth0Sub)
+     * Agrega el favorito en una sola sentencia; no falla si ya existe ni si hay clicks concurrentes.
+     * Devuelve 1 si se insertó, 0 si ya existía o el producto no existe.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO favoritos (id_usuario, id_producto, agregado_en) " +
+                   "SELECT :usuarioId, p.id_producto, now() FROM productos p WHERE p.id_producto = :productoId " +
+                   "ON CONFLICT ON CONSTRAINT uk_favoritos_usuario_producto DO NOTHING",
+           nativeQuery = true)
+    int insertarSiNoExiste(@Param("usuarioId") Long usuarioId, @Param("productoId") Long productoId);
+
+    /**
+     * Elimina el favorito en una sola sentencia. Devuelve 1 si se eliminó, 0 si no existía.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM favoritos WHERE id_usuario = :usuarioId AND id_producto = :productoId",
+           nativeQuery = true)
+    int eliminarSiExiste(@Param("usuarioId") Long usuarioId, @Param("productoId") Long productoId);
+
+    /**
+     * Toggle en una sola sentencia: si existe lo borra, si no lo inserta.
+     * Devuelve -1 si se eliminó, 1 si se agregó, 0 si no hubo cambio
+     * (un click concurrente ya lo agregó, o el producto no existe).
      */
-    @Query("SELECT f FROM Favorito f WHERE f.usuario.auth0Sub = :auth0Sub AND f.producto.id = :productoId")
-    Optional<Favorito> findByAuth0SubAndProductoId(@Param("auth0Sub") String auth0Sub, @Param("productoId") Long productoId);
+    @Query(value = "WITH borrado AS (" +
+                   "  DELETE FROM favoritos WHERE id_usuario = :usuarioId AND id_producto = :productoId RETURNING 1" +
+                   "), insertado AS (" +
+                   "  INSERT INTO favoritos (id_usuario, id_producto, agregado_en) " +
+                   "  SELECT :usuarioId, p.id_producto, now() FROM productos p " +
+                   "  WHERE p.id_producto = :productoId AND NOT EXISTS (SELECT 1 FROM borrado) " +
+                   "  ON CONFLICT ON CONSTRAINT uk_favoritos_usuario_producto DO NOTHING RETURNING 1" +
+                   ") SELECT (SELECT count(*) FROM insertado) - (SELECT count(*) FROM borrado)",
+           nativeQuery = true)
+    long alternar(@Param("usuarioId") Long usuarioId, @Param("productoId") Long productoId);
 
     /**
      * Cuenta cuántos favoritos tiene un producto
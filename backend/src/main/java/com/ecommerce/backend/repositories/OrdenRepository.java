@@ -1,10 +1,15 @@
 package com.ecommerce.backend.repositories;
 
+import com.ecommerce.backend.dto.OrdenItemResumen;
+import com.ecommerce.backend.dto.ProductoMasVendido;
 import com.ecommerce.backend.entities.Orden;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,11 +20,94 @@ public interface OrdenRepository extends JpaRepository<Orden, Long> {
     
     Optional<Orden> findByNumeroOrden(String numeroOrden);
     
-    @Query("SELECT o FROM Orden o JOIN o.items i WHERE i.vendedorSub = :vendedorSub ORDER BY o.creadoEn DESC")
+    // Una fila por orden aunque el vendedor tenga varias líneas en ella
+    @Query("SELECT o FROM Orden o WHERE EXISTS " +
+           "(SELECT 1 FROM OrdenItem i WHERE i.orden = o AND i.vendedorSub = :vendedorSub) " +
+           "ORDER BY o.creadoEn DESC, o.id DESC")
     List<Orden> findByVendedorSub(@Param("vendedorSub") String vendedorSub);
     
+    // Feed del vendedor por keyset (creadoEn, id) dentro de una ventana de fechas opcional [desde, hasta).
+    // Nativa con comparación de fila, como el historial del comprador; los CAST tipan los parámetros null
+    @Query(value = "SELECT o.* FROM ordenes o WHERE EXISTS " +
+                   "(SELECT 1 FROM orden_items oi WHERE oi.id_orden = o.id_orden AND oi.vendedor_sub = :vendedorSub) " +
+                   "AND (CAST(:desde AS timestamptz) IS NULL OR o.creado_en >= CAST(:desde AS timestamptz)) " +
+                   "AND (CAST(:hasta AS timestamptz) IS NULL OR o.creado_en < CAST(:hasta AS timestamptz)) " +
+                   "AND (CAST(:creadoEn AS timestamptz) IS NULL " +
+                   "     OR (o.creado_en, o.id_orden) < (CAST(:creadoEn AS timestamptz), CAST(:id AS bigint))) " +
+                   "ORDER BY o.creado_en DESC, o.id_orden DESC " +
+                   "LIMIT :limite",
+           nativeQuery = true)
+    List<Orden> findFeedVendedor(@Param("vendedorSub") String vendedorSub,
+                                 @Param("desde") Instant desde,
+                                 @Param("hasta") Instant hasta,
+                                 @Param("creadoEn") Instant creadoEn,
+                                 @Param("id") Long id,
+                                 @Param("limite") int limite);
+    
     Optional<Orden> findByIdPagoStripe(String idPagoStripe);
     
+    // PENDIENTE -> PAGADO solo si sigue pendiente: la fila bloqueada hace que una sola confirmación concurrente gane
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE ordenes SET estado = 'PAGADO' WHERE id_orden = :id AND estado = 'PENDIENTE'",
+           nativeQuery = true)
+    int marcarPagadaSiPendiente(@Param("id") Long id);
+    
     @Query("SELECT COUNT(o) FROM Orden o WHERE o.compradorSub = :auth0Sub AND o.estado = 'PAGADO'")
     long countComprasUsuario(@Param("auth0Sub") String auth0Sub);
-}
\ No newline at end of file
+    
+    // Historial del comprador por keyset (creadoEn, id): solo cabeceras, sin tocar items ni productos.
+    // Comparación de fila (nativa) para que sea una condición de rango sobre idx_ordenes_comprador_creado
+    @Query(value = "SELECT o.* FROM ordenes o " +
+                   "WHERE o.comprador_sub = :auth0Sub " +
+                   "AND (CAST(:creadoEn AS timestamptz) IS NULL " +
+                   "     OR (o.creado_en, o.id_orden) < (CAST(:creadoEn AS timestamptz), CAST(:id AS bigint))) " +
+                   "ORDER BY o.creado_en DESC, o.id_orden DESC " +
+                   "LIMIT :limite",
+           nativeQuery = true)
+    List<Orden> findHistorialComprador(@Param("auth0Sub") String auth0Sub,
+                                       @Param("creadoEn") Instant creadoEn,
+                                       @Param("id") Long id,
+                                       @Param("limite") int limite);
+    
+    // Líneas de varias órdenes en una sola consulta, con el producto reducido a título e imagen principal
+    @Query(value = "SELECT oi.id_orden AS ordenId, oi.id_producto AS productoId, p.titulo AS titulo, " +
+                   "p.imagenes[1] AS imagenPrincipal, oi.cantidad AS cantidad, " +
+                   "oi.precio_unitario AS precioUnitario, oi.precio_unitario * oi.cantidad AS subtotal " +
+                   "FROM orden_items oi JOIN productos p ON p.id_producto = oi.id_producto " +
+                   "WHERE oi.id_orden IN (:ordenIds) " +
+                   "ORDER BY oi.id_orden, oi.id_orden_item",
+           nativeQuery = true)
+    List<OrdenItemResumen> findItemsResumenByOrdenIds(@Param("ordenIds") Collection<Long> ordenIds);
+    
+    // Igual que la anterior, pero solo las líneas de un vendedor
+    @Query(value = "SELECT oi.id_orden AS ordenId, oi.id_producto AS productoId, p.titulo AS titulo, " +
+                   "p.imagenes[1] AS imagenPrincipal, oi.cantidad AS cantidad, " +
+                   "oi.precio_unitario AS precioUnitario, oi.precio_unitario * oi.cantidad AS subtotal " +
+                   "FROM orden_items oi JOIN productos p ON p.id_producto = oi.id_producto " +
+                   "WHERE oi.id_orden IN (:ordenIds) AND oi.vendedor_sub = :vendedorSub " +
+                   "ORDER BY oi.id_orden, oi.id_orden_item",
+           nativeQuery = true)
+    List<OrdenItemResumen> findItemsResumenDeVendedor(@Param("ordenIds") Collection<Long> ordenIds,
+                                                      @Param("vendedorSub") String vendedorSub);
+    
+    // Top-K de productos del vendedor por unidades vendidas en órdenes pagadas dentro de [desde, hasta).
+    // Se agrega y recorta sobre orden_items (índice por vendedor) y recién después se une con productos.
+    @Query(value = "SELECT p.id_producto AS id, p.titulo AS nombre, p.precio AS precio, " +
+                   "p.imagenes[1] AS imagenPrincipal, p.stock AS stock, " +
+                   "v.cantidad_vendida AS cantidadVendida, v.total_vendido AS totalVendido " +
+                   "FROM (SELECT oi.id_producto, SUM(oi.cantidad) AS cantidad_vendida, " +
+                   "SUM(oi.cantidad * oi.precio_unitario) AS total_vendido " +
+                   "FROM orden_items oi JOIN ordenes o ON o.id_orden = oi.id_orden " +
+                   "WHERE oi.vendedor_sub = :vendedorSub AND o.estado = 'PAGADO' " +
+                   "AND o.creado_en >= :desde AND o.creado_en < :hasta " +
+                   "GROUP BY oi.id_producto " +
+                   "ORDER BY cantidad_vendida DESC, oi.id_producto " +
+                   "LIMIT :limite) v " +
+                   "JOIN productos p ON p.id_producto = v.id_producto " +
+                   "ORDER BY v.cantidad_vendida DESC, v.id_producto",
+           nativeQuery = true)
+    List<ProductoMasVendido> findMasVendidosPorVendedor(@Param("vendedorSub") String vendedorSub,
+                                                        @Param("desde") Instant desde,
+                                                        @Param("hasta") Instant hasta,
+                                                        @Param("limite") int limite);
+}
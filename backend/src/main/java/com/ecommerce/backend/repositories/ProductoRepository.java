@@ -1,11 +1,15 @@
 package com.ecommerce.backend.repositories;
 
+import com.ecommerce.backend.dto.ProductoResumen;
 import com.ecommerce.backend.entities.Producto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -32,4 +36,86 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     
     // 5. Buscar productos por ownerSub y estado
     List<Producto> findByOwnerSubAndEstado(String ownerSub, String estado);
-}
\ No newline at end of file
+    
+    // 6. Reducir stock de forma atómica solo si alcanza el disponible (stock - reservado) (devuelve filas afectadas: 0 = insuficiente o no existe).
+    //    clearAutomatically: el UPDATE no pasa por el contexto de persistencia; sin limpiarlo, el findById posterior devolvería el stock viejo
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Producto p SET p.stock = p.stock - :cantidad, p.actualizadoEn = CURRENT_TIMESTAMP " +
+           "WHERE p.id = :productoId AND p.stock - p.stockReservado >= :cantidad")
+    int reducirStockSiDisponible(@Param("productoId") Long productoId, @Param("cantidad") Integer cantidad);
+    
+    // 7. Aumentar stock de forma atómica (devuelve filas afectadas: 0 = no existe); limpia el contexto igual que el 6
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Producto p SET p.stock = p.stock + :cantidad, p.actualizadoEn = CURRENT_TIMESTAMP " +
+           "WHERE p.id = :productoId")
+    int aumentarStockAtomico(@Param("productoId") Long productoId, @Param("cantidad") Integer cantidad);
+    
+    // 8. Catálogo paginado por keyset (creadoEn, id) descendente: primera página
+    @Query("SELECT p FROM Producto p ORDER BY p.creadoEn DESC, p.id DESC")
+    List<Producto> findPrimeraPagina(Limit limit);
+    
+    // 9. Catálogo paginado por keyset: página siguiente a la posición (creadoEn, id) del cursor.
+    //    Comparación de fila (nativa) para que Postgres la use como condición de rango sobre el índice (creado_en, id)
+    @Query(value = "SELECT p.* FROM productos p " +
+                   "WHERE (p.creado_en, p.id_producto) < (:creadoEn, :id) " +
+                   "ORDER BY p.creado_en DESC, p.id_producto DESC " +
+                   "LIMIT :limite",
+           nativeQuery = true)
+    List<Producto> findPaginaDespuesDe(@Param("creadoEn") Instant creadoEn,
+                                       @Param("id") Long id,
+                                       @Param("limite") int limite);
+    
+    // 10. Conteos del catálogo (SQL COUNT, sin cargar entidades)
+    long countByCategoria(String categoria);
+    
+    long countByEstado(String estado);
+    
+    long countByCategoriaAndEstado(String categoria, String estado);
+    
+    // 11. Búsqueda de texto completo (columna generada "busqueda" + índice GIN, ver BusquedaProductosRunner)
+    @Query(value = "SELECT p.* FROM productos p " +
+                   "WHERE p.busqueda @@ websearch_to_tsquery('es_unaccent', :consulta) " +
+                   "ORDER BY ts_rank_cd(p.busqueda, websearch_to_tsquery('es_unaccent', :consulta)) DESC, " +
+                   "p.id_producto DESC " +
+                   "LIMIT :limite OFFSET :desde",
+           nativeQuery = true)
+    List<Producto> buscarTextoCompleto(@Param("consulta") String consulta,
+                                       @Param("limite") int limite,
+                                       @Param("desde") int desde);
+    
+    // 12. Catálogo filtrado (filtros opcionales: null = sin filtro) con keyset (creadoEn, id) por comparación de fila.
+    //     Los CAST le dan tipo a los parámetros que pueden llegar null
+    @Query(value = "SELECT p.* FROM productos p " +
+                   "WHERE (CAST(:categoria AS text) IS NULL OR p.categoria = :categoria) " +
+                   "AND (CAST(:estado AS text) IS NULL OR p.estado = :estado) " +
+                   "AND (CAST(:precioDesde AS float8) IS NULL OR p.precio >= :precioDesde) " +
+                   "AND (CAST(:precioHasta AS float8) IS NULL OR p.precio < :precioHasta) " +
+                   "AND (CAST(:creadoEn AS timestamptz) IS NULL " +
+                   "     OR (p.creado_en, p.id_producto) < (CAST(:creadoEn AS timestamptz), CAST(:id AS bigint))) " +
+                   "ORDER BY p.creado_en DESC, p.id_producto DESC " +
+                   "LIMIT :limite",
+           nativeQuery = true)
+    List<Producto> filtrar(@Param("categoria") String categoria,
+                           @Param("estado") String estado,
+                           @Param("precioDesde") Double precioDesde,
+                           @Param("precioHasta") Double precioHasta,
+                           @Param("creadoEn") Instant creadoEn,
+                           @Param("id") Long id,
+                           @Param("limite") int limite);
+    
+    // 13. Listados de tarjetas como proyección (solo las columnas que se muestran)
+    @Query(value = "SELECT p.id_producto AS id, p.titulo AS titulo, p.precio AS precio, p.stock AS stock, " +
+                   "p.categoria AS categoria, p.imagenes[1] AS imagenPrincipal, p.id_usuario AS ownerId, " +
+                   "p.favoritos_count AS favoritosCount " +
+                   "FROM productos p ORDER BY p.creado_en DESC, p.id_producto DESC",
+           nativeQuery = true)
+    List<ProductoResumen> listarResumen();
+    
+    @Query(value = "SELECT p.id_producto AS id, p.titulo AS titulo, p.precio AS precio, p.stock AS stock, " +
+                   "p.categoria AS categoria, p.imagenes[1] AS imagenPrincipal, p.id_usuario AS ownerId, " +
+                   "p.favoritos_count AS favoritosCount " +
+                   "FROM productos p WHERE p.id_usuario = :ownerId " +
+                   "ORDER BY p.creado_en DESC, p.id_producto DESC",
+           nativeQuery = true)
+    List<ProductoResumen> listarResumenPorOwner(@Param("ownerId") Long ownerId);
+}
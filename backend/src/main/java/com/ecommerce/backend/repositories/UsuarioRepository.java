@@ -3,9 +3,15 @@ package com.ecommerce.backend.repositories;
 
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.ecommerce.backend.entities.Usuario;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     Optional<Usuario> findByAuth0Sub(String auth0Sub);
     boolean existsByAuth0Sub(String auth0Sub);
+
+    // Solo el id (índice único idx_usuarios_auth0_sub), sin hidratar el usuario
+    @Query("SELECT u.id FROM Usuario u WHERE u.auth0Sub = :auth0Sub")
+    Optional<Long> findIdByAuth0Sub(@Param("auth0Sub") String auth0Sub);
 }
@@ -0,0 +1,15 @@
+package com.ecommerce.backend.repositories;
+
+import com.ecommerce.backend.entities.VentaVendedorDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface VentaVendedorDiariaRepository extends JpaRepository<VentaVendedorDiaria, Long> {
+
+    // Usa el índice único (vendedor_sub, fecha, estado): a lo sumo 3 filas por día pedido
+    List<VentaVendedorDiaria> findByVendedorSubAndFechaGreaterThanEqualOrderByFechaAsc(String vendedorSub, LocalDate desde);
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.backend.repositories;
+
+import com.ecommerce.backend.entities.VentaVendedorTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface VentaVendedorTotalRepository extends JpaRepository<VentaVendedorTotal, Long> {
+
+    List<VentaVendedorTotal> findByVendedorSub(String vendedorSub);
+}
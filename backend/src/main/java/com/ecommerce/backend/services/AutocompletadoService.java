@@ -0,0 +1,252 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.dto.SugerenciaDto;
+import com.ecommerce.backend.entities.Producto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Índice en memoria para autocompletar títulos de productos.
+ *
+ * Cada palabra del título (normalizada: minúsculas y sin acentos) aporta sus prefijos de hasta
+ * LARGO_CUBETA caracteres; cada prefijo es una cubeta con sus productos ordenados por popularidad
+ * (favoritos + unidades vendidas). Una consulta recorre la cubeta de su prefijo de mayor a menor
+ * popularidad y corta al juntar K coincidencias, así los más populares nunca quedan fuera.
+ *
+ * El índice se actualiza al crear/editar/eliminar productos; el scheduler hace la carga completa
+ * y en cada refresco vuelve a sincronizar todos los ids (altas, renombres y bajas de otras instancias)
+ * junto con la popularidad, sin bloquear el arranque.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AutocompletadoService {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^\\p{Alnum}]+");
+    private static final int LARGO_CUBETA = 3;
+    private static final int MAX_PALABRAS_POR_TITULO = 8;
+    private static final int MAX_LIMITE = 20;
+    // Tope de candidatos revisados por consulta (filtros de varias palabras o prefijos largos);
+    // como se recorre por popularidad, lo que queda fuera es siempre lo menos popular
+    private static final int MAX_CANDIDATOS_RECORRIDOS = 5000;
+
+    private static final Comparator<Entrada> POR_POPULARIDAD =
+            Comparator.comparingLong(Entrada::peso).reversed().thenComparing(Entrada::id);
+
+    private static final String SQL_PRODUCTOS_CON_POPULARIDAD =
+            "SELECT p.id_producto, p.titulo, " +
+            "p.favoritos_count + 2 * COALESCE(v.n, 0) AS peso " +
+            "FROM productos p " +
+            "LEFT JOIN (SELECT oi.id_producto, SUM(oi.cantidad) AS n FROM orden_items oi " +
+            "JOIN ordenes o ON o.id_orden = oi.id_orden WHERE o.estado = 'PAGADO' GROUP BY oi.id_producto) v " +
+            "ON v.id_producto = p.id_producto";
+
+    private record Entrada(Long id, String titulo, List<String> palabras, long peso) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, ConcurrentSkipListSet<Entrada>> cubetas = new ConcurrentHashMap<>();
+    private final Map<Long, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Durante una carga, los cambios incrementales tienen prioridad sobre la foto de la BD
+    private final Set<Long> tocadosDuranteCarga = ConcurrentHashMap.newKeySet();
+    private volatile boolean cargando = false;
+    private volatile boolean cargado = false;
+
+    // ============ CONSULTA ============
+
+    public List<SugerenciaDto> sugerir(String texto, Integer limite) {
+        int k = (limite == null || limite <= 0) ? 8 : Math.min(limite, MAX_LIMITE);
+        String prefijo = normalizar(texto).trim();
+        if (prefijo.isEmpty()) {
+            return List.of();
+        }
+        // Si escriben varias palabras, se busca por la última y se filtra por las anteriores
+        String[] partes = prefijo.split(" ");
+        String ultima = partes[partes.length - 1];
+
+        Set<Entrada> cubeta = cubetas.get(ultima.substring(0, Math.min(ultima.length(), LARGO_CUBETA)));
+        if (cubeta == null) {
+            return List.of();
+        }
+
+        List<SugerenciaDto> resultado = new ArrayList<>(k);
+        int recorridos = 0;
+        for (Entrada e : cubeta) {
+            if (resultado.size() >= k || ++recorridos > MAX_CANDIDATOS_RECORRIDOS) {
+                break;
+            }
+            if (empiezaCon(e, ultima) && contieneAnteriores(e, partes)) {
+                resultado.add(new SugerenciaDto(e.id(), e.titulo()));
+            }
+        }
+        return resultado;
+    }
+
+    private boolean empiezaCon(Entrada e, String prefijo) {
+        if (prefijo.length() <= LARGO_CUBETA) {
+            return true; // la cubeta ya es exactamente ese prefijo
+        }
+        for (String palabra : e.palabras()) {
+            if (palabra.startsWith(prefijo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contieneAnteriores(Entrada e, String[] partes) {
+        for (int i = 0; i < partes.length - 1; i++) {
+            if (!e.palabras().contains(partes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ============ MANTENIMIENTO INCREMENTAL ============
+
+    public void indexar(Producto producto) {
+        if (producto == null || producto.getId() == null) {
+            return;
+        }
+        if (cargando) {
+            tocadosDuranteCarga.add(producto.getId());
+        }
+        Entrada anterior = entradas.get(producto.getId());
+        long peso = anterior != null ? anterior.peso() : 0L;
+        poner(producto.getId(), producto.getTitulo(), peso);
+    }
+
+    public void eliminar(Long productoId) {
+        if (cargando) {
+            tocadosDuranteCarga.add(productoId);
+        }
+        quitar(productoId);
+    }
+
+    // Las escrituras se serializan (son pocas); las lecturas no toman lock
+    private synchronized void poner(Long id, String titulo, long peso) {
+        Entrada nueva = new Entrada(id, titulo, palabrasDe(titulo), peso);
+        Entrada anterior = entradas.put(id, nueva);
+        // La posición en cada cubeta depende del peso: se saca la entrada vieja y se inserta la nueva
+        if (anterior != null) {
+            sacarDeCubetas(anterior);
+        }
+        for (String clave : prefijosDe(nueva.palabras())) {
+            cubetas.computeIfAbsent(clave, c -> new ConcurrentSkipListSet<>(POR_POPULARIDAD)).add(nueva);
+        }
+    }
+
+    private synchronized void quitar(Long productoId) {
+        Entrada anterior = entradas.remove(productoId);
+        if (anterior != null) {
+            sacarDeCubetas(anterior);
+        }
+    }
+
+    private void sacarDeCubetas(Entrada entrada) {
+        for (String clave : prefijosDe(entrada.palabras())) {
+            cubetas.computeIfPresent(clave, (c, cubeta) -> {
+                cubeta.remove(entrada);
+                return cubeta.isEmpty() ? null : cubeta;
+            });
+        }
+    }
+
+    // ============ CARGA Y SINCRONIZACIÓN ============
+
+    /**
+     * Sincroniza el índice completo con la BD: agrega productos nuevos, actualiza títulos y
+     * popularidad, y quita los que ya no existen (incluidos los cambios hechos en otras instancias).
+     */
+    @Scheduled(fixedDelayString = "${app.autocompletado.refresco-ms:600000}")
+    public void cargarORefrescar() {
+        long inicio = System.currentTimeMillis();
+        boolean cargaInicial = !cargado;
+        Set<Long> vistos = new HashSet<>();
+        cargando = true;
+        try {
+            jdbcTemplate.query(SQL_PRODUCTOS_CON_POPULARIDAD, rs -> {
+                Long id = rs.getLong(1);
+                String titulo = rs.getString(2);
+                long peso = rs.getLong(3);
+                vistos.add(id);
+                if (tocadosDuranteCarga.contains(id)) {
+                    return;
+                }
+                Entrada actual = entradas.get(id);
+                if (actual == null || actual.peso() != peso || !Objects.equals(actual.titulo(), titulo)) {
+                    poner(id, titulo, peso);
+                }
+            });
+            for (Long id : List.copyOf(entradas.keySet())) {
+                if (!vistos.contains(id) && !tocadosDuranteCarga.contains(id)) {
+                    quitar(id);
+                }
+            }
+            cargado = true;
+        } finally {
+            cargando = false;
+            tocadosDuranteCarga.clear();
+        }
+        log.info("🔤 Autocompletado {}: {} productos, {} cubetas en {} ms",
+                cargaInicial ? "cargado" : "sincronizado", entradas.size(), cubetas.size(),
+                System.currentTimeMillis() - inicio);
+    }
+
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    // ============ NORMALIZACIÓN ============
+
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    private static List<String> palabrasDe(String titulo) {
+        Set<String> palabras = new LinkedHashSet<>();
+        for (String p : normalizar(titulo).trim().split(" ")) {
+            if (!p.isEmpty()) {
+                palabras.add(p);
+            }
+            if (palabras.size() >= MAX_PALABRAS_POR_TITULO) {
+                break;
+            }
+        }
+        return List.copyOf(palabras);
+    }
+
+    private static Set<String> prefijosDe(List<String> palabras) {
+        Set<String> prefijos = new HashSet<>();
+        for (String palabra : palabras) {
+            for (int largo = 1; largo <= Math.min(palabra.length(), LARGO_CUBETA); largo++) {
+                prefijos.add(palabra.substring(0, largo));
+            }
+        }
+        return prefijos;
+    }
+}
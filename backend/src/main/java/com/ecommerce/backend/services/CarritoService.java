@@ -1,22 +1,36 @@
 package com.ecommerce.backend.services;
 
+import com.ecommerce.backend.cache.CarritoCache;
+import com.ecommerce.backend.cache.CarritoSnapshot;
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.dto.AgregarCarritoDto;
+import com.ecommerce.backend.dto.CarritoLineaDto;
+import com.ecommerce.backend.dto.CarritoResumenDto;
+import com.ecommerce.backend.dto.DisponibilidadCarrito;
+import com.ecommerce.backend.dto.FusionCarritoResultadoDto;
+import com.ecommerce.backend.dto.OperacionesCarritoDto;
 import com.ecommerce.backend.entities.Carrito;
 import com.ecommerce.backend.entities.Producto;
-import com.ecommerce.backend.entities.Usuario;
 import com.ecommerce.backend.exceptions.RecursoNoEncontradoException;
 import com.ecommerce.backend.exceptions.StockInsuficienteException;
 import com.ecommerce.backend.repositories.CarritoRepository;
 import com.ecommerce.backend.repositories.ProductoRepository;
-import com.ecommerce.backend.repositories.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,17 +39,46 @@ import java.util.stream.Collectors;
 public class CarritoService {
 
     private final CarritoRepository carritoRepository;
-    private final UsuarioRepository usuarioRepository;
+    private final UsuarioIdCache usuarioIdCache;
     private final ProductoRepository productoRepository;
+    private final CarritoCache carritoCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Inserta la línea o suma a la existente, sin superar el stock disponible ni reducir lo que ya había
+    private static final String SQL_FUSIONAR_LINEA =
+            "INSERT INTO carritos (id_usuario, id_producto, cantidad, agregado_en, actualizado_en) " +
+            "VALUES (?, ?, ?, now(), now()) " +
+            "ON CONFLICT ON CONSTRAINT uk_carritos_usuario_producto DO UPDATE SET " +
+            "cantidad = GREATEST(carritos.cantidad, LEAST(carritos.cantidad + ?, ?)), actualizado_en = now()";
+
+    // Inserta la línea o fija su cantidad (la cantidad final ya se validó contra el stock)
+    private static final String SQL_ESTABLECER_LINEA =
+            "INSERT INTO carritos (id_usuario, id_producto, cantidad, agregado_en, actualizado_en) " +
+            "VALUES (?, ?, ?, now(), now()) " +
+            "ON CONFLICT ON CONSTRAINT uk_carritos_usuario_producto DO UPDATE SET " +
+            "cantidad = EXCLUDED.cantidad, actualizado_en = now()";
+
+    /**
+     * Obtener la foto del carrito de un usuario (desde cache; una sola consulta si no está cacheada).
+     * Sin @Transactional para que un acierto de cache no tome conexión a la base.
+     */
+    public CarritoSnapshot obtenerSnapshot(String auth0Sub) {
+        return carritoCache.obtener(auth0Sub, sub -> usuarioIdCache.resolverId(sub)
+                .map(carritoRepository::findSnapshotByUsuarioId)
+                .orElse(List.of()));
+    }
+
+    public Map<String, Object> estadisticasCache() {
+        return carritoCache.estadisticas();
+    }
 
     /**
      * Obtener todos los carritos de un usuario
      */
-    @Transactional(readOnly = true)
-    public List<Carrito> obtenerCarritos(String auth0Sub) {
+    public List<CarritoLineaDto> obtenerCarritos(String auth0Sub) {
         log.info("🛒 Obteniendo carritos del usuario: {}", auth0Sub);
         
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<CarritoLineaDto> carritos = obtenerSnapshot(auth0Sub).items();
         
         log.info("✅ Se encontraron {} carritos", carritos.size());
         
@@ -54,9 +97,8 @@ public class CarritoService {
             throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
         }
 
-        // 1. Verificar que el usuario existe
-        Usuario usuario = usuarioRepository.findByAuth0Sub(auth0Sub)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
+        // 1. Verificar que el usuario existe (id desde cache, sin cargar el usuario)
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
 
         // 2. Verificar que el producto existe
         Producto producto = productoRepository.findById(productoId)
@@ -66,7 +108,7 @@ public class CarritoService {
         validarStockDisponible(producto, cantidad);
 
         // 4. Verificar si ya existe en el carrito
-        Optional<Carrito> carritoExistente = carritoRepository.findByAuth0SubAndProductoId(auth0Sub, productoId);
+        Optional<Carrito> carritoExistente = carritoRepository.findByUsuario_IdAndProducto_Id(usuarioId, productoId);
 
         if (carritoExistente.isPresent()) {
             // Actualizar cantidad del carrito existente
@@ -78,13 +120,15 @@ public class CarritoService {
             
             carrito.setCantidad(nuevaCantidad);
             Carrito actualizado = carritoRepository.save(carrito);
+            carritoCache.invalidar(auth0Sub);
             
             log.info("✅ Cantidad actualizada en carrito. Nuevo total: {}", nuevaCantidad);
             return actualizado;
         } else {
             // Crear nuevo carrito
-            Carrito nuevoCarrito = new Carrito(usuario, producto, cantidad);
+            Carrito nuevoCarrito = new Carrito(usuarioIdCache.referencia(auth0Sub), producto, cantidad);
             Carrito guardado = carritoRepository.save(nuevoCarrito);
+            carritoCache.invalidar(auth0Sub);
             
             log.info("✅ Carrito agregado exitosamente con ID: {}", guardado.getId());
             return guardado;
@@ -98,10 +142,11 @@ public class CarritoService {
     public void eliminarCarrito(String auth0Sub, Long productoId) {
         log.info("💔 Eliminando producto {} de carritos del usuario: {}", productoId, auth0Sub);
 
-        Carrito carrito = carritoRepository.findByAuth0SubAndProductoId(auth0Sub, productoId)
+        Carrito carrito = carritoRepository.findByUsuario_IdAndProducto_Id(usuarioIdCache.requerirId(auth0Sub), productoId)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Este producto no está en tu carrito"));
 
         carritoRepository.delete(carrito);
+        carritoCache.invalidar(auth0Sub);
 
         log.info("✅ Carrito eliminado exitosamente");
     }
@@ -125,24 +170,172 @@ public class CarritoService {
         // Verificar stock disponible
         validarStockDisponible(producto, nuevaCantidad);
 
-        Carrito carrito = carritoRepository.findByAuth0SubAndProductoId(auth0Sub, productoId)
+        Carrito carrito = carritoRepository.findByUsuario_IdAndProducto_Id(usuarioIdCache.requerirId(auth0Sub), productoId)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Este producto no está en tu carrito"));
 
         carrito.setCantidad(nuevaCantidad);
         Carrito actualizado = carritoRepository.save(carrito);
+        carritoCache.invalidar(auth0Sub);
 
         log.info("✅ Cantidad actualizada exitosamente a: {}", nuevaCantidad);
         return actualizado;
     }
 
+    /**
+     * Aplicar un lote de operaciones (agregar / establecer cantidad / eliminar) en una sola transacción.
+     * Usuario, productos y líneas existentes se cargan una sola vez; el stock se valida
+     * sobre la cantidad final de cada producto y, si algo falla, no se aplica ningún cambio.
+     */
+    @Transactional
+    public CarritoResumenDto aplicarOperaciones(String auth0Sub, List<OperacionesCarritoDto.Operacion> operaciones) {
+        log.info("🧺 Aplicando {} operaciones al carrito del usuario: {}", operaciones.size(), auth0Sub);
+
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
+
+        Set<Long> productosIds = operaciones.stream()
+                .map(OperacionesCarritoDto.Operacion::getProductoId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<Long, Producto> productos = productoRepository.findAllById(productosIds).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        Map<Long, Carrito> existentes = carritoRepository.findByUsuario_IdAndProducto_IdIn(usuarioId, productosIds)
+                .stream()
+                .collect(Collectors.toMap(Carrito::getProductoId, Function.identity()));
+
+        // Cantidad final por producto (0 = sin línea), partiendo de lo que ya hay en el carrito
+        Map<Long, Integer> cantidades = new LinkedHashMap<>();
+        for (Long productoId : productosIds) {
+            Carrito existente = existentes.get(productoId);
+            cantidades.put(productoId, existente != null ? existente.getCantidad() : 0);
+        }
+
+        for (OperacionesCarritoDto.Operacion operacion : operaciones) {
+            Long productoId = operacion.getProductoId();
+            switch (operacion.getTipo()) {
+                case AGREGAR -> {
+                    validarCantidadOperacion(operacion);
+                    cantidades.merge(productoId, operacion.getCantidad(), Integer::sum);
+                }
+                case ESTABLECER -> {
+                    validarCantidadOperacion(operacion);
+                    cantidades.put(productoId, operacion.getCantidad());
+                }
+                case ELIMINAR -> cantidades.put(productoId, 0);
+            }
+        }
+
+        List<Long> sinStock = new ArrayList<>();
+        List<String> detalle = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : cantidades.entrySet()) {
+            if (entry.getValue() == 0) {
+                continue;
+            }
+            Producto producto = productos.get(entry.getKey());
+            if (producto == null) {
+                throw new RecursoNoEncontradoException("Producto no encontrado con ID: " + entry.getKey());
+            }
+            if (producto.getStockDisponible() < entry.getValue()) {
+                sinStock.add(producto.getId());
+                detalle.add(String.format("'%s' (disponible: %d, solicitado: %d)",
+                        producto.getTitulo(), producto.getStockDisponible(), entry.getValue()));
+            }
+        }
+        if (!sinStock.isEmpty()) {
+            throw new StockInsuficienteException("Stock insuficiente para: " + String.join(", ", detalle), sinStock);
+        }
+
+        // Escritura en dos sentencias: un DELETE ... IN y un batch de upserts (IDs en orden ascendente)
+        List<Long> eliminados = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(cantidades).entrySet()) {
+            Carrito existente = existentes.get(entry.getKey());
+            int cantidad = entry.getValue();
+            if (cantidad == 0) {
+                if (existente != null) {
+                    eliminados.add(entry.getKey());
+                }
+            } else if (existente == null || existente.getCantidad() != cantidad) {
+                upserts.add(new Object[] { usuarioId, entry.getKey(), cantidad });
+            }
+        }
+        if (!eliminados.isEmpty()) {
+            carritoRepository.deleteByUsuarioIdAndProductoIdIn(usuarioId, eliminados);
+        }
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_ESTABLECER_LINEA, upserts);
+        }
+        carritoCache.invalidar(auth0Sub);
+
+        log.info("✅ Lote aplicado - Escritas: {}, Eliminadas: {}", upserts.size(), eliminados.size());
+
+        return CarritoResumenDto.desde(carritoRepository.findResumenByUsuarioId(usuarioId));
+    }
+
+    private void validarCantidadOperacion(OperacionesCarritoDto.Operacion operacion) {
+        if (operacion.getCantidad() == null || operacion.getCantidad() <= 0) {
+            throw new IllegalArgumentException(
+                "La cantidad debe ser mayor a 0 (producto " + operacion.getProductoId() + ")");
+        }
+    }
+
+    /**
+     * Fusionar el carrito de invitado con el del usuario al iniciar sesión.
+     * Una consulta IN trae stock disponible y cantidades actuales; un batch de upserts sobre
+     * uk_carritos_usuario_producto suma las cantidades. Lo que no alcanza se recorta al stock
+     * disponible (o se omite) en vez de hacer fallar el login.
+     */
+    @Transactional
+    public FusionCarritoResultadoDto fusionarCarritoInvitado(String auth0Sub, List<AgregarCarritoDto> items) {
+        log.info("🔀 Fusionando carrito de invitado ({} líneas) para usuario: {}", items.size(), auth0Sub);
+
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
+
+        TreeMap<Long, Integer> solicitados = new TreeMap<>();
+        for (AgregarCarritoDto item : items) {
+            solicitados.merge(item.getProductoId(), item.getCantidad(), Integer::sum);
+        }
+
+        Map<Long, DisponibilidadCarrito> disponibilidad = carritoRepository
+                .findDisponibilidad(usuarioId, solicitados.keySet()).stream()
+                .collect(Collectors.toMap(DisponibilidadCarrito::getProductoId, Function.identity()));
+
+        List<Object[]> upserts = new ArrayList<>();
+        List<Long> ajustados = new ArrayList<>();
+        List<Long> omitidos = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : solicitados.entrySet()) {
+            Long productoId = entry.getKey();
+            DisponibilidadCarrito actual = disponibilidad.get(productoId);
+            if (actual == null || actual.getStockDisponible() <= actual.getEnCarrito()) {
+                omitidos.add(productoId);
+                continue;
+            }
+            int maximo = actual.getStockDisponible();
+            if (actual.getEnCarrito() + entry.getValue() > maximo) {
+                ajustados.add(productoId);
+            }
+            upserts.add(new Object[] { usuarioId, productoId, Math.min(entry.getValue(), maximo), entry.getValue(), maximo });
+        }
+
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_FUSIONAR_LINEA, upserts);
+        }
+        carritoCache.invalidar(auth0Sub);
+
+        log.info("✅ Carrito fusionado - Líneas: {}, Ajustadas: {}, Omitidas: {}",
+                upserts.size(), ajustados.size(), omitidos.size());
+
+        CarritoResumenDto resumen = CarritoResumenDto.desde(carritoRepository.findResumenByUsuarioId(usuarioId));
+        return new FusionCarritoResultadoDto(resumen, ajustados, omitidos);
+    }
+
     /**
      * Validar stock disponible
      */
     private void validarStockDisponible(Producto producto, Integer cantidadRequerida) {
-        if (producto.getStock() < cantidadRequerida) {
+        if (producto.getStockDisponible() < cantidadRequerida) {
             throw new StockInsuficienteException(
                 String.format("Stock insuficiente para '%s'. Stock disponible: %d, Cantidad solicitada: %d", 
-                    producto.getTitulo(), producto.getStock(), cantidadRequerida)
+                    producto.getTitulo(), producto.getStockDisponible(), cantidadRequerida)
             );
         }
     }
@@ -150,41 +343,42 @@ public class CarritoService {
     /**
      * Verificar si un producto está en carritos
      */
-    @Transactional(readOnly = true)
     public boolean estaEnCarrito(String auth0Sub, Long productoId) {
-        return carritoRepository.existsByAuth0SubAndProductoId(auth0Sub, productoId);
+        return obtenerSnapshot(auth0Sub).productosIds().contains(productoId);
+    }
+
+    /**
+     * De los productos indicados, cuáles están en el carrito (desde la foto cacheada)
+     */
+    public Set<Long> filtrarEnCarrito(String auth0Sub, Collection<Long> productosIds) {
+        if (productosIds.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> enCarrito = obtenerSnapshot(auth0Sub).productosIds();
+        return productosIds.stream()
+                .filter(enCarrito::contains)
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     /**
      * Contar carritos de un usuario
      */
-    @Transactional(readOnly = true)
     public long contarCarritos(String auth0Sub) {
-        Usuario usuario = usuarioRepository.findByAuth0Sub(auth0Sub)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
-        
-        return carritoRepository.countByUsuario_Id(usuario.getId());
+        return obtenerSnapshot(auth0Sub).items().size();
     }
 
     /**
      * Obtener IDs de productos en carritos (útil para el frontend)
      */
-    @Transactional(readOnly = true)
     public List<Long> obtenerIdsCarritos(String auth0Sub) {
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
-        
-        return carritos.stream()
-                .map(c -> c.getProducto().getId())
-                .collect(Collectors.toList());
+        return obtenerSnapshot(auth0Sub).idsEnOrden();
     }
 
     /**
      * Calcular total del carrito
      */
-    @Transactional(readOnly = true)
     public Double calcularTotal(String auth0Sub) {
-        Double total = carritoRepository.calcularTotal(auth0Sub);
-        return total != null ? total : 0.0;
+        return obtenerSnapshot(auth0Sub).resumen().getTotal();
     }
 
     /**
@@ -194,30 +388,23 @@ public class CarritoService {
     public void limpiarCarrito(String auth0Sub) {
         log.info("🗑️ Limpiando todo el carrito del usuario: {}", auth0Sub);
         
-        carritoRepository.deleteByAuth0Sub(auth0Sub);
+        usuarioIdCache.resolverId(auth0Sub).ifPresent(carritoRepository::deleteByUsuarioId);
+        carritoCache.invalidar(auth0Sub);
         
         log.info("✅ Carrito limpiado exitosamente");
     }
 
     /**
      * Obtener resumen del carrito (cantidad total de productos y total a pagar)
+     * Se arma junto con la foto cacheada del carrito (una sola consulta si no está cacheada).
      */
-    @Transactional(readOnly = true)
-    public Map<String, Object> obtenerResumen(String auth0Sub) {
+    public CarritoResumenDto obtenerResumen(String auth0Sub) {
         log.info("📊 Obteniendo resumen del carrito para usuario: {}", auth0Sub);
 
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
-        long cantidadTotal = carritos.stream().mapToLong(Carrito::getCantidad).sum();
-        Double total = calcularTotal(auth0Sub);
-
-        Map<String, Object> resumen = new HashMap<>();
-        resumen.put("cantidadProductos", carritos.size());
-        resumen.put("cantidadTotalItems", cantidadTotal);
-        resumen.put("total", total);
-        resumen.put("items", carritos);
+        CarritoResumenDto resumen = obtenerSnapshot(auth0Sub).resumen();
 
         log.info("✅ Resumen del carrito - Productos: {}, Items: {}, Total: ${}", 
-                carritos.size(), cantidadTotal, total);
+                resumen.getCantidadProductos(), resumen.getCantidadTotalItems(), resumen.getTotal());
 
         return resumen;
     }
@@ -0,0 +1,190 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador desnormalizado de favoritos por producto (columna productos.favoritos_count).
+ *
+ * Cada alta/baja suma un delta en memoria (LongAdder: sin contención entre clicks del mismo producto)
+ * y un barrido periódico vuelca los deltas acumulados en un solo batch de UPDATEs.
+ * Una reconciliación menos frecuente compara los conteos con la tabla favoritos y corrige solo
+ * las diferencias que no se explican por deltas aún sin volcar (de esta instancia o de otras).
+ * El valor leído es eventualmente consistente (atrasado como máximo un intervalo de volcado).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContadorFavoritosService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductoDetalleCache productoDetalleCache;
+
+    // Las claves no se eliminan: quitar una entrada podría perder un delta concurrente
+    private final Map<Long, LongAdder> pendientes = new ConcurrentHashMap<>();
+    // Transacciones con un delta registrado que todavía no terminaron (su delta aún no está en pendientes)
+    private final Map<Long, AtomicInteger> enVuelo = new ConcurrentHashMap<>();
+
+    @Value("${app.favoritos.volcado-ms:5000}")
+    private long volcadoMs;
+
+    // Sin GREATEST: un conteo negativo delata un desvío en lugar de esconderlo
+    private static final String SQL_APLICAR_DELTA =
+            "UPDATE productos SET favoritos_count = favoritos_count + ? WHERE id_producto = ?";
+
+    // Diferencia (conteo real - conteo desnormalizado) de los productos desfasados
+    private static final String SQL_DIVERGENCIAS =
+            "SELECT p.id_producto, COUNT(f.id_favorito) - p.favoritos_count AS diferencia " +
+            "FROM productos p LEFT JOIN favoritos f ON f.id_producto = p.id_producto " +
+            "GROUP BY p.id_producto, p.favoritos_count " +
+            "HAVING COUNT(f.id_favorito) <> p.favoritos_count";
+
+    /**
+     * Registra un cambio en el conteo. Dentro de una transacción se aplica recién tras el commit,
+     * así un favorito que termina en rollback no se cuenta.
+     */
+    public void registrar(Long productoId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            AtomicInteger transacciones = enVuelo.computeIfAbsent(productoId, id -> new AtomicInteger());
+            transacciones.incrementAndGet();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    // Primero se acumula y recién después deja de estar en vuelo: nunca queda invisible
+                    if (estado == STATUS_COMMITTED) {
+                        acumular(productoId, delta);
+                    }
+                    transacciones.decrementAndGet();
+                }
+            });
+        } else {
+            acumular(productoId, delta);
+        }
+    }
+
+    private void acumular(Long productoId, long delta) {
+        pendientes.computeIfAbsent(productoId, id -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Vuelca los deltas pendientes en un batch (IDs en orden ascendente).
+     * Lo volcado se descuenta del acumulador, así los incrementos concurrentes no se pierden.
+     */
+    @Scheduled(fixedDelayString = "${app.favoritos.volcado-ms:5000}")
+    public synchronized void volcar() {
+        TreeMap<Long, Long> deltas = new TreeMap<>();
+        pendientes.forEach((productoId, acumulado) -> {
+            long valor = acumulado.sum();
+            if (valor != 0) {
+                deltas.put(productoId, valor);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> parametros = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            parametros.add(new Object[] { entry.getValue(), entry.getKey() });
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_APLICAR_DELTA, parametros));
+        } catch (RuntimeException e) {
+            log.warn("⚠️ No se pudieron volcar los contadores de favoritos, se reintenta en el próximo ciclo: {}", e.getMessage());
+            return;
+        }
+
+        deltas.forEach((productoId, valor) -> pendientes.get(productoId).add(-valor));
+        productoDetalleCache.invalidar(deltas.keySet());
+        log.debug("❤️ Contadores de favoritos volcados para {} productos", deltas.size());
+    }
+
+    /**
+     * Corrige favoritos_count contra la tabla favoritos. Corre también al arrancar para inicializar la columna.
+     *
+     * Una diferencia puede ser solo un delta que otra instancia todavía no volcó, así que se corrige
+     * únicamente si se repite igual en dos lecturas separadas por varios intervalos de volcado.
+     * Además se excluyen los productos con deltas propios pendientes o en vuelo al momento de la
+     * segunda lectura (la BD ya los ve, pero el volcado los sumaría otra vez).
+     * La corrección se aplica como delta, así no pisa volcados que lleguen mientras tanto.
+     */
+    @Scheduled(initialDelayString = "${app.favoritos.reconciliar-inicial-ms:30000}",
+               fixedDelayString = "${app.favoritos.reconciliar-ms:3600000}")
+    public void reconciliar() {
+        Map<Long, Long> sospechosos = divergencias();
+        if (sospechosos.isEmpty()) {
+            return;
+        }
+        try {
+            Thread.sleep(3 * volcadoMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int corregidos;
+        synchronized (this) {
+            volcar();
+            TreeMap<Long, Long> correcciones = new TreeMap<>();
+            divergencias().forEach((productoId, diferencia) -> {
+                if (diferencia.equals(sospechosos.get(productoId)) && sinDeltasPropios(productoId)) {
+                    correcciones.put(productoId, diferencia);
+                }
+            });
+            if (correcciones.isEmpty()) {
+                return;
+            }
+            List<Object[]> parametros = new ArrayList<>(correcciones.size());
+            correcciones.forEach((productoId, diferencia) -> parametros.add(new Object[] { diferencia, productoId }));
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_APLICAR_DELTA, parametros));
+            productoDetalleCache.invalidar(correcciones.keySet());
+            corregidos = correcciones.size();
+        }
+        log.info("🔁 Contadores de favoritos reconciliados: {} productos corregidos", corregidos);
+    }
+
+    private Map<Long, Long> divergencias() {
+        Map<Long, Long> diferencias = new HashMap<>();
+        jdbcTemplate.query(SQL_DIVERGENCIAS, rs -> {
+            diferencias.put(rs.getLong(1), rs.getLong(2));
+        });
+        return diferencias;
+    }
+
+    private boolean sinDeltasPropios(Long productoId) {
+        LongAdder pendiente = pendientes.get(productoId);
+        AtomicInteger transacciones = enVuelo.get(productoId);
+        return (pendiente == null || pendiente.sum() == 0) && (transacciones == null || transacciones.get() == 0);
+    }
+
+    /**
+     * Al apagar (de forma ordenada) se vuelca lo pendiente para no perder deltas
+     */
+    @PreDestroy
+    public void volcarAlApagar() {
+        volcar();
+    }
+}
@@ -0,0 +1,200 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.dto.ProductosFiltradosDto;
+import com.ecommerce.backend.entities.Producto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Conteos de facetas del catálogo (categoría, estado, rango de precio) mantenidos en memoria.
+ *
+ * Se guarda un conteo por cada combinación (categoría, estado, rango); son pocas celdas,
+ * así que cualquier conteo filtrado se obtiene sumándolas sin tocar la BD.
+ * Se actualiza incrementalmente al crear/editar/eliminar productos y se reconstruye
+ * con un GROUP BY al iniciar y periódicamente (corrige cualquier desvío).
+ *
+ * Los ajustes que llegan mientras corre la reconstrucción se aplican al mapa vigente y además
+ * se guardan en un buffer que se reaplica sobre el mapa nuevo antes de publicarlo, así no se pierden.
+ */
+@Slf4j
+@Service
+public class FacetasProductoService {
+
+    public record Celda(String categoria, String estado, int rango) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double[] limitesPrecio;
+    private final String sqlReconstruir;
+
+    private volatile Map<Celda, AtomicLong> celdas = new ConcurrentHashMap<>();
+
+    // Ajustes recibidos durante una reconstrucción en curso (null si no hay ninguna); protegido por candado
+    private final Object candado = new Object();
+    private List<Map.Entry<Celda, Long>> ajustesDuranteReconstruccion;
+
+    private static final String SQL_CELDA_ACTUAL =
+            "SELECT categoria, estado, precio FROM productos WHERE id_producto = ?";
+
+    public FacetasProductoService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.facetas.limites-precio:25,50,100,250,500}") double[] limitesPrecio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.limitesPrecio = limitesPrecio.clone();
+        Arrays.sort(this.limitesPrecio);
+
+        // width_bucket(x, limites) = cantidad de límites <= x, igual que rangoDe(...)
+        String arreglo = Arrays.stream(this.limitesPrecio)
+                .mapToObj(Double::toString)
+                .collect(Collectors.joining(",", "ARRAY[", "]::float8[]"));
+        this.sqlReconstruir = "SELECT categoria, estado, width_bucket(precio, " + arreglo + ") AS rango, COUNT(*) " +
+                "FROM productos GROUP BY categoria, estado, rango";
+    }
+
+    // ============ MANTENIMIENTO ============
+
+    @Scheduled(fixedDelayString = "${app.facetas.reconciliar-ms:600000}")
+    public synchronized void reconstruir() {
+        synchronized (candado) {
+            ajustesDuranteReconstruccion = new ArrayList<>();
+        }
+
+        Map<Celda, AtomicLong> nuevas = new ConcurrentHashMap<>();
+        try {
+            jdbcTemplate.query(sqlReconstruir, rs -> {
+                nuevas.put(new Celda(rs.getString(1), rs.getString(2), rs.getInt(3)), new AtomicLong(rs.getLong(4)));
+            });
+        } catch (RuntimeException e) {
+            synchronized (candado) {
+                ajustesDuranteReconstruccion = null;
+            }
+            throw e;
+        }
+
+        int reaplicados;
+        synchronized (candado) {
+            // Los ajustes registrados durante la consulta se reaplican antes de publicar el mapa nuevo
+            reaplicados = ajustesDuranteReconstruccion.size();
+            for (Map.Entry<Celda, Long> ajuste : ajustesDuranteReconstruccion) {
+                nuevas.computeIfAbsent(ajuste.getKey(), c -> new AtomicLong()).addAndGet(ajuste.getValue());
+            }
+            celdas = nuevas;
+            ajustesDuranteReconstruccion = null;
+        }
+        log.info("📊 Facetas reconstruidas: {} celdas ({} ajustes reaplicados)", nuevas.size(), reaplicados);
+    }
+
+    public void registrarAlta(Producto producto) {
+        ajustar(celdaDe(producto.getCategoria(), producto.getEstado(), producto.getPrecio()), 1);
+    }
+
+    public void registrarBaja(Celda celda) {
+        ajustar(celda, -1);
+    }
+
+    public void registrarCambio(Celda anterior, Producto actual) {
+        Celda nueva = celdaDe(actual.getCategoria(), actual.getEstado(), actual.getPrecio());
+        if (anterior != null && !anterior.equals(nueva)) {
+            ajustar(anterior, -1);
+            ajustar(nueva, 1);
+        }
+    }
+
+    /**
+     * Celda en la que está hoy el producto según la BD (null si no existe)
+     */
+    public Celda celdaActual(Long productoId) {
+        List<Celda> filas = jdbcTemplate.query(SQL_CELDA_ACTUAL,
+                (rs, i) -> celdaDe(rs.getString(1), rs.getString(2), rs.getDouble(3)), productoId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    private void ajustar(Celda celda, long delta) {
+        if (celda == null) {
+            return;
+        }
+        synchronized (candado) {
+            celdas.computeIfAbsent(celda, c -> new AtomicLong()).addAndGet(delta);
+            if (ajustesDuranteReconstruccion != null) {
+                ajustesDuranteReconstruccion.add(Map.entry(celda, delta));
+            }
+        }
+    }
+
+    // ============ CONSULTA ============
+
+    public ProductosFiltradosDto.Facetas contar(String categoria, String estado, Integer rango) {
+        Map<String, Long> porCategoria = new TreeMap<>();
+        Map<String, Long> porEstado = new TreeMap<>();
+        long[] porRango = new long[limitesPrecio.length + 1];
+
+        for (Map.Entry<Celda, AtomicLong> entry : celdas.entrySet()) {
+            Celda c = entry.getKey();
+            long n = entry.getValue().get();
+            if (n <= 0) {
+                continue;
+            }
+            boolean okCategoria = categoria == null || categoria.equals(c.categoria());
+            boolean okEstado = estado == null || estado.equals(c.estado());
+            boolean okRango = rango == null || rango == c.rango();
+
+            if (okEstado && okRango) {
+                porCategoria.merge(c.categoria(), n, Long::sum);
+            }
+            if (okCategoria && okRango) {
+                porEstado.merge(c.estado(), n, Long::sum);
+            }
+            if (okCategoria && okEstado && c.rango() >= 0 && c.rango() < porRango.length) {
+                porRango[c.rango()] += n;
+            }
+        }
+
+        List<ProductosFiltradosDto.RangoPrecio> rangos = new ArrayList<>(porRango.length);
+        for (int i = 0; i < porRango.length; i++) {
+            rangos.add(new ProductosFiltradosDto.RangoPrecio(i, desdeDe(i), hastaDe(i), porRango[i]));
+        }
+        return new ProductosFiltradosDto.Facetas(porCategoria, porEstado, rangos);
+    }
+
+    public int cantidadRangos() {
+        return limitesPrecio.length + 1;
+    }
+
+    /**
+     * Límite inferior (inclusivo) del rango, o null si no tiene
+     */
+    public Double desdeDe(int rango) {
+        return rango <= 0 ? null : limitesPrecio[rango - 1];
+    }
+
+    /**
+     * Límite superior (exclusivo) del rango, o null si no tiene
+     */
+    public Double hastaDe(int rango) {
+        return rango >= limitesPrecio.length ? null : limitesPrecio[rango];
+    }
+
+    private Celda celdaDe(String categoria, String estado, Double precio) {
+        return new Celda(categoria, estado, rangoDe(precio));
+    }
+
+    private int rangoDe(Double precio) {
+        double valor = precio != null ? precio : 0.0;
+        int rango = 0;
+        while (rango < limitesPrecio.length && limitesPrecio[rango] <= valor) {
+            rango++;
+        }
+        return rango;
+    }
+}
@@ -1,20 +1,18 @@
 package com.ecommerce.backend.services;
 
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.dto.EstadoFavoritoDto;
 import com.ecommerce.backend.entities.Favorito;
-import com.ecommerce.backend.entities.Producto;
-import com.ecommerce.backend.entities.Usuario;
 import com.ecommerce.backend.exceptions.RecursoNoEncontradoException;
-import com.ecommerce.backend.exceptions.DuplicadoException;
 import com.ecommerce.backend.repositories.FavoritoRepository;
-import com.ecommerce.backend.repositories.ProductoRepository;
-import com.ecommerce.backend.repositories.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -22,8 +20,8 @@ import java.util.stream.Collectors;
 public class FavoritoService {
 
     private final FavoritoRepository favoritoRepository;
-    private final UsuarioRepository usuarioRepository;
-    private final ProductoRepository productoRepository;
+    private final UsuarioIdCache usuarioIdCache;
+    private final ContadorFavoritosService contadorFavoritosService;
 
     /**
      * Obtener todos los favoritos de un usuario
@@ -32,7 +30,9 @@ public class FavoritoService {
     public List<Favorito> obtenerFavoritos(String auth0Sub) {
         log.info("📋 Obteniendo favoritos del usuario: {}", auth0Sub);
         
-        List<Favorito> favoritos = favoritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<Favorito> favoritos = usuarioIdCache.resolverId(auth0Sub)
+                .map(favoritoRepository::findByUsuarioIdOrderByAgregadoEnDesc)
+                .orElse(List.of());
         
         log.info("✅ Se encontraron {} favoritos", favoritos.size());
         
@@ -40,65 +40,65 @@ public class FavoritoService {
     }
 
     /**
-     * Agregar producto a favoritos
+     * Agregar producto a favoritos (INSERT ... ON CONFLICT DO NOTHING: idempotente y sin carreras)
      */
     @Transactional
-    public Favorito agregarFavorito(String auth0Sub, Long productoId) {
+    public EstadoFavoritoDto agregarFavorito(String auth0Sub, Long productoId) {
         log.info("❤️ Agregando producto {} a favoritos del usuario: {}", productoId, auth0Sub);
 
-        // 1. Verificar que el usuario existe
-        Usuario usuario = usuarioRepository.findByAuth0Sub(auth0Sub)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
 
-        // 2. Verificar que el producto existe
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Producto no encontrado con ID: " + productoId));
-
-        // 3. Verificar que no esté ya en favoritos
-        if (favoritoRepository.existsByAuth0SubAndProductoId(auth0Sub, productoId)) {
-            throw new DuplicadoException("Este producto ya está en tus favoritos");
+        if (favoritoRepository.insertarSiNoExiste(usuarioId, productoId) == 1) {
+            contadorFavoritosService.registrar(productoId, 1);
+            log.info("✅ Favorito agregado exitosamente");
+            return new EstadoFavoritoDto(productoId, true, true);
         }
 
-        // 4. Crear y guardar favorito
-        Favorito favorito = new Favorito(usuario, producto);
-        Favorito guardado = favoritoRepository.save(favorito);
-
-        log.info("✅ Favorito agregado exitosamente con ID: {}", guardado.getId());
-
-        return guardado;
+        // 0 filas: ya era favorito, o el producto no existe (solo aquí se consulta de nuevo)
+        if (!favoritoRepository.existsByUsuario_IdAndProducto_Id(usuarioId, productoId)) {
+            throw new RecursoNoEncontradoException("Producto no encontrado con ID: " + productoId);
+        }
+        log.info("ℹ️ El producto {} ya estaba en favoritos", productoId);
+        return new EstadoFavoritoDto(productoId, true, false);
     }
 
     /**
-     * Eliminar producto de favoritos
+     * Eliminar producto de favoritos (un solo DELETE; idempotente)
      */
     @Transactional
-    public void eliminarFavorito(String auth0Sub, Long productoId) {
+    public EstadoFavoritoDto eliminarFavorito(String auth0Sub, Long productoId) {
         log.info("💔 Eliminando producto {} de favoritos del usuario: {}", productoId, auth0Sub);
 
-        Favorito favorito = favoritoRepository.findByAuth0SubAndProductoId(auth0Sub, productoId)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Este producto no está en tus favoritos"));
+        int eliminados = favoritoRepository.eliminarSiExiste(usuarioIdCache.requerirId(auth0Sub), productoId);
+        contadorFavoritosService.registrar(productoId, -eliminados);
 
-        favoritoRepository.delete(favorito);
-
-        log.info("✅ Favorito eliminado exitosamente");
+        log.info(eliminados > 0 ? "✅ Favorito eliminado exitosamente" : "ℹ️ El producto no estaba en favoritos");
+        return new EstadoFavoritoDto(productoId, false, eliminados > 0);
     }
 
     /**
-     * Toggle favorito (agregar si no existe, eliminar si existe)
-     * Retorna: Favorito si se agregó, null si se eliminó
+     * Toggle favorito (agregar si no existe, eliminar si existe) en una sola sentencia
      */
     @Transactional
-    public Favorito toggleFavorito(String auth0Sub, Long productoId) {
+    public EstadoFavoritoDto toggleFavorito(String auth0Sub, Long productoId) {
         log.info("🔄 Toggle favorito - Producto: {}, Usuario: {}", productoId, auth0Sub);
 
-        boolean existe = favoritoRepository.existsByAuth0SubAndProductoId(auth0Sub, productoId);
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
+        long resultado = favoritoRepository.alternar(usuarioId, productoId);
+        contadorFavoritosService.registrar(productoId, (int) resultado);
+
+        if (resultado > 0) {
+            return new EstadoFavoritoDto(productoId, true, true);
+        }
+        if (resultado < 0) {
+            return new EstadoFavoritoDto(productoId, false, true);
+        }
 
-        if (existe) {
-            eliminarFavorito(auth0Sub, productoId);
-            return null; // Indica que se eliminó
-        } else {
-            return agregarFavorito(auth0Sub, productoId);
+        // Sin cambio: un click concurrente ya lo agregó, o el producto no existe
+        if (!favoritoRepository.existsByUsuario_IdAndProducto_Id(usuarioId, productoId)) {
+            throw new RecursoNoEncontradoException("Producto no encontrado con ID: " + productoId);
         }
+        return new EstadoFavoritoDto(productoId, true, false);
     }
 
     /**
@@ -106,7 +106,22 @@ public class FavoritoService {
      */
     @Transactional(readOnly = true)
     public boolean esFavorito(String auth0Sub, Long productoId) {
-        return favoritoRepository.existsByAuth0SubAndProductoId(auth0Sub, productoId);
+        return usuarioIdCache.resolverId(auth0Sub)
+                .map(usuarioId -> favoritoRepository.existsByUsuario_IdAndProducto_Id(usuarioId, productoId))
+                .orElse(false);
+    }
+
+    /**
+     * De los productos indicados, cuáles están en favoritos (una sola consulta)
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> filtrarFavoritos(String auth0Sub, Collection<Long> productosIds) {
+        if (productosIds.isEmpty()) {
+            return Set.of();
+        }
+        return usuarioIdCache.resolverId(auth0Sub)
+                .map(usuarioId -> Set.copyOf(favoritoRepository.findProductoIdsFavoritos(usuarioId, productosIds)))
+                .orElse(Set.of());
     }
 
     /**
@@ -114,10 +129,7 @@ public class FavoritoService {
      */
     @Transactional(readOnly = true)
     public long contarFavoritos(String auth0Sub) {
-        Usuario usuario = usuarioRepository.findByAuth0Sub(auth0Sub)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
-        
-        return favoritoRepository.countByUsuario_Id(usuario.getId());
+        return favoritoRepository.countByUsuario_Id(usuarioIdCache.requerirId(auth0Sub));
     }
 
     /**
@@ -125,10 +137,8 @@ public class FavoritoService {
      */
     @Transactional(readOnly = true)
     public List<Long> obtenerIdsFavoritos(String auth0Sub) {
-        List<Favorito> favoritos = favoritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
-        
-        return favoritos.stream()
-                .map(f -> f.getProducto().getId())
-                .collect(Collectors.toList());
+        return usuarioIdCache.resolverId(auth0Sub)
+                .map(favoritoRepository::findProductoIdsByUsuarioId)
+                .orElse(List.of());
     }
 }
\ No newline at end of file
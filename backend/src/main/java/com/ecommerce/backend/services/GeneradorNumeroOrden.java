@@ -0,0 +1,14 @@
+package com.ecommerce.backend.services;
+
+/**
+ * Genera los números de orden visibles para el cliente (columna ordenes.numero_orden, máx. 20 caracteres).
+ * Cada implementación debe garantizar unicidad entre todas las instancias del backend.
+ */
+public interface GeneradorNumeroOrden {
+
+    /**
+     * Devuelve un número de orden nuevo, legible y ordenable por fecha de emisión
+     * @return número de orden, p. ej. "ORD-20251017-000004B"
+     */
+    String siguiente();
+}
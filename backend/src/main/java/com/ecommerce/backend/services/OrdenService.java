@@ -1,10 +1,15 @@
 package com.ecommerce.backend.services;
 
+import com.ecommerce.backend.cache.UsuarioIdCache;
 import com.ecommerce.backend.entities.*;
 import com.ecommerce.backend.repositories.*;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import com.ecommerce.backend.dto.CheckoutRequestDto;
+import com.ecommerce.backend.dto.CursorKeyset;
+import com.ecommerce.backend.dto.OrdenHistorialDto;
+import com.ecommerce.backend.dto.OrdenItemResumen;
+import com.ecommerce.backend.dto.PaginaCursorDto;
 import com.ecommerce.backend.dto.PaymentIntentResponseDto;
 import com.ecommerce.backend.exceptions.RecursoNoEncontradoException;
 import com.ecommerce.backend.exceptions.StockInsuficienteException;
@@ -12,19 +17,28 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrdenService {
     
+    private static final int HISTORIAL_LIMITE_POR_DEFECTO = 10;
+    private static final int HISTORIAL_LIMITE_MAXIMO = 50;
+    
     private final OrdenRepository ordenRepository;
     private final CarritoRepository carritoRepository;
     private final ProductoRepository productoRepository;
-    private final UsuarioRepository usuarioRepository;
+    private final UsuarioIdCache usuarioIdCache;
     private final CarritoService carritoService;
     private final StripeService stripeService;
+    private final ReservaStockService reservaStockService;
+    private final ResumenVentasService resumenVentasService;
+    private final GeneradorNumeroOrden generadorNumeroOrden;
     
     /**
      * Crear una orden desde el carrito
@@ -33,12 +47,11 @@ public class OrdenService {
     public Orden crearOrdenDesdeCarrito(String auth0Sub, CheckoutRequestDto checkoutDto) {
         log.info("🛒 Creando orden para usuario: {}", auth0Sub);
         
-        // 1. Obtener usuario
-        Usuario usuario = usuarioRepository.findByAuth0Sub(auth0Sub)
-                .orElseThrow(() -> new RecursoNoEncontradoException("Usuario no encontrado"));
+        // 1. Obtener usuario (id desde cache; la orden solo necesita la referencia)
+        Long usuarioId = usuarioIdCache.requerirId(auth0Sub);
         
         // 2. Obtener carrito del usuario
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<Carrito> carritos = carritoRepository.findByUsuarioIdOrderByAgregadoEnDesc(usuarioId);
         
         if (carritos.isEmpty()) {
             throw new IllegalStateException("El carrito está vacío");
@@ -49,7 +62,8 @@ public class OrdenService {
         
         // 4. Crear orden
         Orden orden = new Orden();
-        orden.setComprador(usuario);
+        orden.setNumeroOrden(generadorNumeroOrden.siguiente());
+        orden.setComprador(usuarioIdCache.referencia(auth0Sub));
         orden.setCompradorSub(auth0Sub);
         orden.setDireccionEnvio(checkoutDto.getDireccionEnvio());
         orden.setCiudad(checkoutDto.getCiudad());
@@ -74,8 +88,10 @@ public class OrdenService {
         orden.setTotal(total);
         orden.setEstado("PENDIENTE");
         
-        // 6. Guardar orden (pero NO reducir stock todavía)
+        // 6. Guardar orden y reservar stock por el TTL configurado (se descuenta al pagar)
         Orden ordenGuardada = ordenRepository.save(orden);
+        reservaStockService.reservarStock(ordenGuardada.getId(), cantidadesPorProducto(ordenGuardada));
+        resumenVentasService.registrarCambioEstado(ordenGuardada, null, ordenGuardada.getEstado());
         log.info("✅ Orden creada: {}, Total: ${}", ordenGuardada.getNumeroOrden(), total);
         
         return ordenGuardada;
@@ -87,10 +103,10 @@ public class OrdenService {
     private void validarStockCarrito(List<Carrito> carritos) {
         for (Carrito carrito : carritos) {
             Producto producto = carrito.getProducto();
-            if (producto.getStock() < carrito.getCantidad()) {
+            if (producto.getStockDisponible() < carrito.getCantidad()) {
                 throw new StockInsuficienteException(
                     String.format("Stock insuficiente para '%s'. Disponible: %d, Solicitado: %d",
-                        producto.getTitulo(), producto.getStock(), carrito.getCantidad())
+                        producto.getTitulo(), producto.getStockDisponible(), carrito.getCantidad())
                 );
             }
         }
@@ -106,30 +122,14 @@ public class OrdenService {
         Orden orden = ordenRepository.findById(ordenId)
                 .orElseThrow(() -> new RecursoNoEncontradoException("Orden no encontrada"));
         
-        if (!"PENDIENTE".equals(orden.getEstado())) {
-            throw new IllegalStateException("La orden ya no está pendiente");
-        }
+        // Pasar a PAGADO antes de tocar stock: solo una confirmación concurrente lo consigue
+        tomarPago(orden);
         
         // Reducir stock de cada producto
-        for (OrdenItem item : orden.getItems()) {
-            Producto producto = item.getProducto();
-            int nuevaCantidad = producto.getStock() - item.getCantidad();
-            
-            if (nuevaCantidad < 0) {
-                throw new StockInsuficienteException(
-                    String.format("Stock insuficiente para '%s' al procesar pago", 
-                        producto.getTitulo())
-                );
-            }
-            
-            producto.setStock(nuevaCantidad);
-            productoRepository.save(producto);
-            log.info("📉 Stock reducido: {} - Nuevo stock: {}", 
-                producto.getTitulo(), nuevaCantidad);
-        }
+        reducirStockItems(orden);
         
         // Actualizar orden
-        orden.setEstado("PAGADO");
+        resumenVentasService.registrarCambioEstado(orden, "PENDIENTE", "PAGADO");
         orden.setIdPagoStripe(idPagoStripe);
         orden.setMetodoPago(metodoPago);
         
@@ -143,6 +143,38 @@ public class OrdenService {
         return ordenActualizada;
     }
     
+    /**
+     * Transición PENDIENTE -> PAGADO con un UPDATE condicional: la lectura previa del estado no bloquea,
+     * así que dos confirmaciones simultáneas la verían pendiente y descontarían el stock dos veces.
+     * La segunda espera el lock de la fila, ya no la encuentra PENDIENTE y aborta sin tocar stock ni resumen.
+     */
+    private void tomarPago(Orden orden) {
+        if (ordenRepository.marcarPagadaSiPendiente(orden.getId()) == 0) {
+            throw new IllegalStateException("La orden ya no está pendiente");
+        }
+        orden.setEstado("PAGADO");
+    }
+    
+    /**
+     * Convertir en venta el stock reservado para los items de la orden (ver ReservaStockService).
+     * Si algún producto no alcanza, se lanza excepción y la transacción completa hace rollback.
+     */
+    private void reducirStockItems(Orden orden) {
+        Map<Long, Integer> productosYCantidades = cantidadesPorProducto(orden);
+
+        reservaStockService.confirmarReservas(orden.getId(), productosYCantidades);
+        log.info("📉 Stock reducido para {} productos de la orden {}",
+                productosYCantidades.size(), orden.getNumeroOrden());
+    }
+
+    private Map<Long, Integer> cantidadesPorProducto(Orden orden) {
+        Map<Long, Integer> productosYCantidades = new HashMap<>();
+        for (OrdenItem item : orden.getItems()) {
+            productosYCantidades.merge(item.getProducto().getId(), item.getCantidad(), Integer::sum);
+        }
+        return productosYCantidades;
+    }
+    
     /**
      * Obtener órdenes del usuario
      */
@@ -151,6 +183,40 @@ public class OrdenService {
         return ordenRepository.findByCompradorAuth0SubOrderByCreadoEnDesc(auth0Sub);
     }
     
+    /**
+     * Historial paginado del comprador: una consulta para las cabeceras de la página y otra
+     * para todas sus líneas (producto resumido), sin importar cuántas órdenes tenga el usuario.
+     */
+    @Transactional(readOnly = true)
+    public PaginaCursorDto<OrdenHistorialDto> obtenerHistorial(String auth0Sub, String cursor, Integer limite) {
+        int tamanio = (limite == null || limite <= 0)
+                ? HISTORIAL_LIMITE_POR_DEFECTO : Math.min(limite, HISTORIAL_LIMITE_MAXIMO);
+        CursorKeyset pos = CursorKeyset.decodificar(cursor);
+
+        // Se pide un elemento extra para saber si hay página siguiente sin hacer COUNT
+        List<Orden> filas = ordenRepository.findHistorialComprador(auth0Sub,
+                pos != null ? pos.creadoEn() : null, pos != null ? pos.id() : null, tamanio + 1);
+
+        boolean hayMas = filas.size() > tamanio;
+        List<Orden> ordenes = hayMas ? filas.subList(0, tamanio) : filas;
+        if (ordenes.isEmpty()) {
+            return new PaginaCursorDto<>(List.of(), null, false);
+        }
+
+        Map<Long, List<OrdenItemResumen>> itemsPorOrden = ordenRepository
+                .findItemsResumenByOrdenIds(ordenes.stream().map(Orden::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(OrdenItemResumen::getOrdenId));
+
+        List<OrdenHistorialDto> items = ordenes.stream()
+                .map(o -> OrdenHistorialDto.desde(o, itemsPorOrden.getOrDefault(o.getId(), List.of())))
+                .toList();
+
+        Orden ultima = ordenes.get(ordenes.size() - 1);
+        String siguiente = hayMas ? CursorKeyset.codificar(ultima.getCreadoEn(), ultima.getId()) : null;
+        return new PaginaCursorDto<>(items, siguiente, hayMas);
+    }
+    
     /**
      * Obtener órdenes donde el usuario es vendedor
      */
@@ -200,25 +266,12 @@ public class OrdenService {
         // 4. Obtener detalles del pago
         PaymentIntent paymentIntent = stripeService.obtenerDetallesPago(paymentIntentId);
 
-        // 5. Reducir stock de cada producto
-        for (OrdenItem item : orden.getItems()) {
-            Producto producto = item.getProducto();
-            int nuevaCantidad = producto.getStock() - item.getCantidad();
-
-            if (nuevaCantidad < 0) {
-                throw new StockInsuficienteException(
-                        String.format("Stock insuficiente para '%s' al procesar pago",
-                                producto.getTitulo()));
-            }
-
-            producto.setStock(nuevaCantidad);
-            productoRepository.save(producto);
-            log.info("📉 Stock reducido: {} - Cantidad: {}, Nuevo stock: {}",
-                    producto.getTitulo(), item.getCantidad(), nuevaCantidad);
-        }
+        // 5. Pasar a PAGADO (condicional) y reducir stock de cada producto
+        tomarPago(orden);
+        reducirStockItems(orden);
 
         // 6. Actualizar orden
-        orden.setEstado("PAGADO");
+        resumenVentasService.registrarCambioEstado(orden, "PENDIENTE", "PAGADO");
         orden.setIdPagoStripe(paymentIntentId);
         orden.setMetodoPago("card"); // Por ahora solo tarjeta
 
@@ -3,7 +3,10 @@ package com.ecommerce.backend.services;
 import java.util.List;
 import java.util.Optional;
 
+import com.ecommerce.backend.dto.PaginaCursorDto;
 import com.ecommerce.backend.dto.ProductoConDetalleDto; // 🆕
+import com.ecommerce.backend.dto.ProductoResumen;
+import com.ecommerce.backend.dto.ProductosFiltradosDto;
 import com.ecommerce.backend.entities.Producto;
 
 public interface ProductoService {
@@ -14,6 +17,18 @@ public interface ProductoService {
 
     List<Producto> getProductos();
 
+    // Catálogo paginado por cursor (cursor null = primera página)
+    PaginaCursorDto<Producto> getProductosPagina(String cursor, Integer limite);
+
+    // Búsqueda de texto completo con ranking (cursor null = primera página)
+    PaginaCursorDto<Producto> buscarProductos(String consulta, String cursor, Integer limite);
+
+    // Catálogo filtrado por categoría/estado/rango de precio, con conteos por faceta
+    ProductosFiltradosDto filtrarProductos(String categoria, String estado, Integer rango, String cursor, Integer limite);
+
+    // Conteo del catálogo; sin filtros se sirve desde un total cacheado que se refresca periódicamente
+    long contarProductos(String categoria, String estado);
+
     Optional<Producto> getProductoById(Long id);
     
     // 🆕 NUEVO MÉTODO
@@ -23,6 +38,11 @@ public interface ProductoService {
 
     List<Producto> findByOwnerId(Long ownerId); 
 
+    // Listados de tarjetas como proyección liviana (sin hidratar entidades)
+    List<ProductoResumen> listarResumen();
+
+    List<ProductoResumen> listarResumenPorOwner(Long ownerId);
+
     Producto actualizarStock(Long productoId, Integer nuevoStock);
     
     boolean verificarStockDisponible(Long productoId, Integer cantidad);
@@ -1,12 +1,22 @@
 package com.ecommerce.backend.services;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import com.ecommerce.backend.dto.CursorKeyset;
+import com.ecommerce.backend.dto.PaginaCursorDto;
 import com.ecommerce.backend.dto.ProductoConDetalleDto; // 🆕
+import com.ecommerce.backend.dto.ProductoResumen;
+import com.ecommerce.backend.dto.ProductosFiltradosDto;
 import com.ecommerce.backend.entities.Producto;
 import com.ecommerce.backend.entities.Usuario;
 import com.ecommerce.backend.repositories.ProductoRepository;
@@ -19,16 +29,42 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class ProductoServiceImplement implements ProductoService {
 
+    private static final int LIMITE_POR_DEFECTO = 24;
+    private static final int LIMITE_MAXIMO = 100;
+    private static final int DESPLAZAMIENTO_MAXIMO_BUSQUEDA = 10_000;
+
     private final ProductoRepository productoRepository;
+    private final ProductoDetalleCache productoDetalleCache;
+    private final FacetasProductoService facetasProductoService;
+    private final AutocompletadoService autocompletadoService;
+
+    // Total de productos cacheado (-1 = aún no calculado)
+    private final AtomicLong totalProductosCache = new AtomicLong(-1);
 
     @Override
     public Producto saveProducto(Producto producto) {
-        return productoRepository.save(producto);
+        FacetasProductoService.Celda anterior = producto.getId() != null
+                ? facetasProductoService.celdaActual(producto.getId()) : null;
+        Producto guardado = productoRepository.save(producto);
+        productoDetalleCache.invalidar(guardado.getId());
+        if (anterior == null) {
+            facetasProductoService.registrarAlta(guardado);
+        } else {
+            facetasProductoService.registrarCambio(anterior, guardado);
+        }
+        autocompletadoService.indexar(guardado);
+        return guardado;
     }
 
     @Override
     public Producto updateProducto(Producto producto) {
-        return productoRepository.save(producto);
+        // Se lee la celda de facetas actual en BD antes de guardar los cambios
+        FacetasProductoService.Celda anterior = facetasProductoService.celdaActual(producto.getId());
+        Producto actualizado = productoRepository.save(producto);
+        productoDetalleCache.invalidar(actualizado.getId());
+        facetasProductoService.registrarCambio(anterior, actualizado);
+        autocompletadoService.indexar(actualizado);
+        return actualizado;
     }
 
     @Override
@@ -36,18 +72,115 @@ public class ProductoServiceImplement implements ProductoService {
         return productoRepository.findAll();
     }
 
+    @Override
+    public PaginaCursorDto<Producto> getProductosPagina(String cursor, Integer limite) {
+        int tamanio = (limite == null || limite <= 0) ? LIMITE_POR_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+        // Se pide un elemento extra para saber si hay página siguiente sin hacer COUNT
+        Limit limit = Limit.of(tamanio + 1);
+
+        List<Producto> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = productoRepository.findPrimeraPagina(limit);
+        } else {
+            CursorKeyset pos = CursorKeyset.decodificar(cursor);
+            filas = productoRepository.findPaginaDespuesDe(pos.creadoEn(), pos.id(), tamanio + 1);
+        }
+
+        boolean hayMas = filas.size() > tamanio;
+        List<Producto> items = hayMas ? filas.subList(0, tamanio) : filas;
+        String siguiente = hayMas ? codificarCursor(items.get(items.size() - 1)) : null;
+
+        return new PaginaCursorDto<>(items, siguiente, hayMas);
+    }
+
+    @Override
+    public PaginaCursorDto<Producto> buscarProductos(String consulta, String cursor, Integer limite) {
+        if (consulta == null || consulta.isBlank()) {
+            return getProductosPagina(cursor, limite);
+        }
+
+        int tamanio = (limite == null || limite <= 0) ? LIMITE_POR_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+        int desde = decodificarDesplazamiento(cursor);
+
+        // Los resultados van ordenados por relevancia, así que el cursor es la posición en el ranking
+        List<Producto> filas = productoRepository.buscarTextoCompleto(consulta.trim(), tamanio + 1, desde);
+
+        boolean hayMas = filas.size() > tamanio && desde + tamanio < DESPLAZAMIENTO_MAXIMO_BUSQUEDA;
+        List<Producto> items = filas.size() > tamanio ? filas.subList(0, tamanio) : filas;
+        String siguiente = hayMas ? codificarDesplazamiento(desde + tamanio) : null;
+
+        return new PaginaCursorDto<>(items, siguiente, hayMas);
+    }
+
+    @Override
+    public ProductosFiltradosDto filtrarProductos(String categoria, String estado, Integer rango,
+                                                  String cursor, Integer limite) {
+        String cat = (categoria == null || categoria.isBlank()) ? null : categoria;
+        String est = (estado == null || estado.isBlank()) ? null : estado;
+        if (rango != null && (rango < 0 || rango >= facetasProductoService.cantidadRangos())) {
+            throw new IllegalArgumentException("Rango de precio inválido: " + rango);
+        }
+        Double desde = rango != null ? facetasProductoService.desdeDe(rango) : null;
+        Double hasta = rango != null ? facetasProductoService.hastaDe(rango) : null;
+
+        int tamanio = (limite == null || limite <= 0) ? LIMITE_POR_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+        CursorKeyset pos = CursorKeyset.decodificar(cursor);
+
+        List<Producto> filas = productoRepository.filtrar(cat, est, desde, hasta,
+                pos != null ? pos.creadoEn() : null, pos != null ? pos.id() : null, tamanio + 1);
+
+        boolean hayMas = filas.size() > tamanio;
+        List<Producto> items = hayMas ? filas.subList(0, tamanio) : filas;
+        String siguiente = hayMas ? codificarCursor(items.get(items.size() - 1)) : null;
+
+        return new ProductosFiltradosDto(items, siguiente, hayMas, facetasProductoService.contar(cat, est, rango));
+    }
+
+    @Override
+    public long contarProductos(String categoria, String estado) {
+        boolean porCategoria = categoria != null && !categoria.isBlank();
+        boolean porEstado = estado != null && !estado.isBlank();
+
+        if (porCategoria && porEstado) {
+            return productoRepository.countByCategoriaAndEstado(categoria, estado);
+        }
+        if (porCategoria) {
+            return productoRepository.countByCategoria(categoria);
+        }
+        if (porEstado) {
+            return productoRepository.countByEstado(estado);
+        }
+
+        long total = totalProductosCache.get();
+        return total >= 0 ? total : refrescarTotalProductos();
+    }
+
+    /**
+     * Refresca el total cacheado para que los dashboards que lo consultan seguido no toquen la BD
+     */
+    @Scheduled(fixedDelayString = "${app.productos.conteo-refresco-ms:30000}")
+    public long refrescarTotalProductos() {
+        long total = productoRepository.count();
+        totalProductosCache.set(total);
+        return total;
+    }
+
     @Override
     public Optional<Producto> getProductoById(Long id) {
         return productoRepository.findById(id);
     }
     
-    // 🆕 NUEVO MÉTODO QUE INCLUYE INFO DEL OWNER
+    // 🆕 NUEVO MÉTODO QUE INCLUYE INFO DEL OWNER (servido desde cache; se invalida en cada escritura)
     @Override
     public Optional<ProductoConDetalleDto> getProductoConDetalle(Long id) {
+        return Optional.ofNullable(productoDetalleCache.obtener(id, this::construirDetalle));
+    }
+
+    private ProductoConDetalleDto construirDetalle(Long id) {
         Optional<Producto> productoOpt = productoRepository.findById(id);
         
         if (productoOpt.isEmpty()) {
-            return Optional.empty();
+            return null;
         }
         
         Producto p = productoOpt.get();
@@ -63,7 +196,9 @@ public class ProductoServiceImplement implements ProductoService {
         dto.setDescripcion(p.getDescripcion());
         dto.setPrecio(p.getPrecio());
         dto.setStock(p.getStock());
-        dto.setImagenesUrl(p.getImagenesUrl());
+        dto.setStockDisponible(p.getStockDisponible());
+        dto.setFavoritosCount(p.getFavoritosCount());
+        dto.setImagenesUrl(List.copyOf(p.getImagenesUrl()));
         dto.setImagenPrincipal(p.getImagenPrincipal());
         dto.setWhatsappContacto(p.getWhatsappContacto());
         dto.setOwnerId(p.getOwnerId());
@@ -87,12 +222,16 @@ public class ProductoServiceImplement implements ProductoService {
             log.warn("⚠️ Producto sin owner: {}", p.getId());
         }
         
-        return Optional.of(dto);
+        return dto;
     }
 
     @Override
     public void deleteProducto(Long id) {
+        FacetasProductoService.Celda anterior = facetasProductoService.celdaActual(id);
         productoRepository.deleteById(id);
+        productoDetalleCache.invalidar(id);
+        facetasProductoService.registrarBaja(anterior);
+        autocompletadoService.eliminar(id);
     }
 
     @Override
@@ -100,6 +239,16 @@ public class ProductoServiceImplement implements ProductoService {
         return productoRepository.findByOwner_Id(ownerId);
     }
 
+    @Override
+    public List<ProductoResumen> listarResumen() {
+        return productoRepository.listarResumen();
+    }
+
+    @Override
+    public List<ProductoResumen> listarResumenPorOwner(Long ownerId) {
+        return productoRepository.listarResumenPorOwner(ownerId);
+    }
+
     @Override
     @Transactional
     public Producto actualizarStock(Long productoId, Integer nuevoStock) {
@@ -111,7 +260,9 @@ public class ProductoServiceImplement implements ProductoService {
         }
         
         producto.setStock(nuevoStock);
-        return productoRepository.save(producto);
+        Producto actualizado = productoRepository.save(producto);
+        productoDetalleCache.invalidar(productoId);
+        return actualizado;
     }
 
     @Override
@@ -119,38 +270,71 @@ public class ProductoServiceImplement implements ProductoService {
         Producto producto = productoRepository.findById(productoId)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
         
-        return producto.getStock() >= cantidad;
+        return producto.getStockDisponible() >= cantidad;
     }
 
     @Override
     @Transactional
     public Producto reducirStock(Long productoId, Integer cantidad) {
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        
-        if (cantidad <= 0) {
+        if (cantidad == null || cantidad <= 0) {
             throw new IllegalArgumentException("La cantidad a reducir debe ser mayor a 0");
         }
         
-        if (producto.getStock() < cantidad) {
-            throw new IllegalArgumentException("Stock insuficiente. Stock disponible: " + producto.getStock());
+        // UPDATE condicional: una sola sentencia, sin lecturas previas ni actualizaciones perdidas
+        if (productoRepository.reducirStockSiDisponible(productoId, cantidad) == 0) {
+            Producto producto = productoRepository.findById(productoId)
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            throw new IllegalArgumentException("Stock insuficiente. Stock disponible: " + producto.getStockDisponible());
         }
+        productoDetalleCache.invalidar(productoId);
         
-        producto.setStock(producto.getStock() - cantidad);
-        return productoRepository.save(producto);
+        return productoRepository.findById(productoId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
 
     @Override
     @Transactional
     public Producto aumentarStock(Long productoId, Integer cantidad) {
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        
-        if (cantidad <= 0) {
+        if (cantidad == null || cantidad <= 0) {
             throw new IllegalArgumentException("La cantidad a aumentar debe ser mayor a 0");
         }
         
-        producto.setStock(producto.getStock() + cantidad);
-        return productoRepository.save(producto);
+        if (productoRepository.aumentarStockAtomico(productoId, cantidad) == 0) {
+            throw new RuntimeException("Producto no encontrado");
+        }
+        productoDetalleCache.invalidar(productoId);
+        
+        return productoRepository.findById(productoId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    }
+
+    // ============ CURSOR DE PAGINACIÓN ============
+
+    private String codificarCursor(Producto ultimo) {
+        return CursorKeyset.codificar(ultimo.getCreadoEn(), ultimo.getId());
+    }
+
+    private String codificarDesplazamiento(int desde) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("b:" + desde).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int decodificarDesplazamiento(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith("b:")) {
+                throw new IllegalArgumentException("Cursor de búsqueda inválido");
+            }
+            int desde = Integer.parseInt(raw.substring(2));
+            if (desde < 0 || desde > DESPLAZAMIENTO_MAXIMO_BUSQUEDA) {
+                throw new IllegalArgumentException("Cursor de búsqueda inválido");
+            }
+            return desde;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de búsqueda inválido");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.cache.CarritoCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purga periódica de líneas de carrito abandonadas (sin cambios hace más de N días).
+ * Borra en lotes acotados, cada uno en su propia transacción corta; SKIP LOCKED evita
+ * esperar por líneas que un usuario está modificando en ese momento.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurgaCarritosService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CarritoCache carritoCache;
+
+    @Value("${app.carritos.purga.dias:30}")
+    private long diasAbandono;
+
+    @Value("${app.carritos.purga.lote:1000}")
+    private int lote;
+
+    private static final String SQL_PURGAR_LOTE =
+            "DELETE FROM carritos WHERE id_carrito IN (" +
+            "SELECT id_carrito FROM carritos WHERE actualizado_en < ? " +
+            "ORDER BY actualizado_en LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING (SELECT u.auth0_sub FROM usuarios u WHERE u.id_usuario = carritos.id_usuario)";
+
+    private final AtomicLong totalPurgadas = new AtomicLong();
+    private final AtomicLong ejecuciones = new AtomicLong();
+    private volatile long ultimasPurgadas;
+    private volatile long ultimaDuracionMs;
+    private volatile Instant ultimaEjecucion;
+
+    @Scheduled(initialDelayString = "${app.carritos.purga.inicial-ms:300000}",
+               fixedDelayString = "${app.carritos.purga.intervalo-ms:3600000}")
+    public void purgarAbandonados() {
+        long inicio = System.currentTimeMillis();
+        Instant limite = Instant.now().minus(Duration.ofDays(diasAbandono));
+
+        long purgadas = 0;
+        int borradas;
+        do {
+            Integer resultado = transactionTemplate.execute(status -> purgarLote(limite));
+            borradas = resultado != null ? resultado : 0;
+            purgadas += borradas;
+        } while (borradas == lote);
+
+        ultimasPurgadas = purgadas;
+        ultimaDuracionMs = System.currentTimeMillis() - inicio;
+        ultimaEjecucion = Instant.now();
+        totalPurgadas.addAndGet(purgadas);
+        ejecuciones.incrementAndGet();
+
+        if (purgadas > 0) {
+            log.info("🧹 Carritos abandonados purgados: {} líneas (más de {} días) en {} ms",
+                    purgadas, diasAbandono, ultimaDuracionMs);
+        }
+    }
+
+    private int purgarLote(Instant limite) {
+        List<String> subs = jdbcTemplate.queryForList(SQL_PURGAR_LOTE, String.class, Timestamp.from(limite), lote);
+        Set<String> usuarios = new HashSet<>(subs);
+        usuarios.remove(null);
+        usuarios.forEach(carritoCache::invalidar);
+        return subs.size();
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("diasAbandono", diasAbandono);
+        stats.put("lote", lote);
+        stats.put("ejecuciones", ejecuciones.get());
+        stats.put("totalPurgadas", totalPurgadas.get());
+        stats.put("ultimasPurgadas", ultimasPurgadas);
+        stats.put("ultimaDuracionMs", ultimaDuracionMs);
+        stats.put("ultimaEjecucion", ultimaEjecucion);
+        return stats;
+    }
+}
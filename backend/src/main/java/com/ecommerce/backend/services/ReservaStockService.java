@@ -0,0 +1,207 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservaStockService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockService stockService;
+    private final ProductoDetalleCache productoDetalleCache;
+
+    @Value("${app.reservas.ttl-minutos:15}")
+    private long ttlMinutos;
+
+    @Value("${app.reservas.lote-barrido:500}")
+    private int loteBarrido;
+
+    private static final String SQL_RETENER_STOCK =
+            "UPDATE productos SET stock_reservado = stock_reservado + ? " +
+            "WHERE id_producto = ? AND stock - stock_reservado >= ?";
+
+    // Los tiempos salen del reloj de la base (el mismo que usa el barrido); now() es fijo en toda la transacción
+    private static final String SQL_INSERTAR_RESERVA =
+            "INSERT INTO reservas_stock (id_orden, id_producto, cantidad, creado_en, expira_en) " +
+            "VALUES (?, ?, ?, now(), now() + ? * interval '1 minute')";
+
+    private static final String SQL_CALCULAR_EXPIRACION =
+            "SELECT now() + ? * interval '1 minute'";
+
+    private static final String SQL_TOMAR_RESERVAS_ORDEN =
+            "DELETE FROM reservas_stock WHERE id_orden = ? RETURNING id_producto, cantidad";
+
+    private static final String SQL_CONVERTIR_EN_VENTA =
+            "UPDATE productos SET stock = stock - ?, stock_reservado = GREATEST(stock_reservado - ?, 0), " +
+            "actualizado_en = now() WHERE id_producto = ? AND stock >= ?";
+
+    private static final String SQL_TOMAR_RESERVAS_EXPIRADAS =
+            "DELETE FROM reservas_stock WHERE id_reserva IN (" +
+            "SELECT id_reserva FROM reservas_stock WHERE expira_en < now() " +
+            "ORDER BY expira_en LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id_producto, cantidad";
+
+    private static final String SQL_LIBERAR_STOCK =
+            "UPDATE productos SET stock_reservado = GREATEST(stock_reservado - ?, 0) WHERE id_producto = ?";
+
+    /**
+     * Retener stock para una orden recién creada durante el TTL configurado.
+     * Todos los productos se retienen en un solo batch (IDs en orden ascendente);
+     * si alguno no alcanza, se lanza excepción y nada queda retenido.
+     */
+    @Transactional
+    public Instant reservarStock(Long ordenId, Map<Long, Integer> productosYCantidades) {
+        TreeMap<Long, Integer> ordenados = new TreeMap<>(productosYCantidades);
+
+        List<Object[]> retener = new ArrayList<>(ordenados.size());
+        List<Object[]> reservas = new ArrayList<>(ordenados.size());
+        for (Map.Entry<Long, Integer> entry : ordenados.entrySet()) {
+            retener.add(new Object[] { entry.getValue(), entry.getKey(), entry.getValue() });
+            reservas.add(new Object[] { ordenId, entry.getKey(), entry.getValue(), ttlMinutos });
+        }
+
+        int[] filas = jdbcTemplate.batchUpdate(SQL_RETENER_STOCK, retener);
+        productoDetalleCache.invalidar(ordenados.keySet());
+        List<Long> sinStock = new ArrayList<>();
+        int i = 0;
+        for (Long productoId : ordenados.keySet()) {
+            if (filas[i++] == 0) {
+                sinStock.add(productoId);
+            }
+        }
+        stockService.lanzarSiFaltaStock(ordenados, sinStock);
+
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_RESERVA, reservas);
+        Instant expiraEn = jdbcTemplate.queryForObject(SQL_CALCULAR_EXPIRACION, Timestamp.class, ttlMinutos).toInstant();
+
+        log.info("🔒 Stock reservado para orden {} ({} productos) hasta {}", ordenId, ordenados.size(), expiraEn);
+        return expiraEn;
+    }
+
+    /**
+     * Convertir las reservas de una orden en venta (al confirmarse el pago).
+     * Los productos cuya reserva ya expiró se descuentan del stock disponible como una venta normal.
+     */
+    @Transactional
+    public void confirmarReservas(Long ordenId, Map<Long, Integer> productosYCantidades) {
+        // El DELETE ... RETURNING "toma" las reservas: si el barrido ya las liberó, no vuelven aquí
+        Map<Long, Integer> reservado = tomarReservas(ordenId);
+
+        TreeMap<Long, Integer> convertir = new TreeMap<>();
+        Map<Long, Integer> sinReserva = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : productosYCantidades.entrySet()) {
+            int retenido = reservado.getOrDefault(entry.getKey(), 0);
+            if (retenido >= entry.getValue()) {
+                convertir.put(entry.getKey(), entry.getValue());
+            } else {
+                sinReserva.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (!convertir.isEmpty()) {
+            List<Object[]> parametros = new ArrayList<>(convertir.size());
+            for (Map.Entry<Long, Integer> entry : convertir.entrySet()) {
+                int retenido = reservado.get(entry.getKey());
+                parametros.add(new Object[] { entry.getValue(), retenido, entry.getKey(), entry.getValue() });
+            }
+            int[] filas = jdbcTemplate.batchUpdate(SQL_CONVERTIR_EN_VENTA, parametros);
+            productoDetalleCache.invalidar(convertir.keySet());
+            List<Long> sinStock = new ArrayList<>();
+            int i = 0;
+            for (Long productoId : convertir.keySet()) {
+                if (filas[i++] == 0) {
+                    sinStock.add(productoId);
+                }
+            }
+            stockService.lanzarSiFaltaStock(convertir, sinStock);
+        }
+
+        // Liberar retenciones que no cubrían la cantidad completa antes de descontar como venta normal
+        List<Object[]> liberar = new ArrayList<>();
+        for (Long productoId : new TreeMap<>(sinReserva).keySet()) {
+            Integer retenido = reservado.get(productoId);
+            if (retenido != null) {
+                liberar.add(new Object[] { retenido, productoId });
+            }
+        }
+        if (!liberar.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_LIBERAR_STOCK, liberar);
+            productoDetalleCache.invalidar(reservado.keySet());
+        }
+
+        if (!sinReserva.isEmpty()) {
+            log.warn("⚠️ Orden {} sin reserva vigente para {} productos, descontando stock disponible",
+                    ordenId, sinReserva.size());
+            stockService.reducirStockEnLote(sinReserva);
+        }
+
+        log.info("✅ Reservas de la orden {} convertidas en venta ({} productos)", ordenId, convertir.size());
+    }
+
+    /**
+     * Barrido periódico: libera en lotes las reservas expiradas.
+     * Cada lote es una transacción corta; SKIP LOCKED evita competir con pagos en curso.
+     */
+    @Scheduled(fixedDelayString = "${app.reservas.barrido-ms:60000}")
+    public void liberarReservasExpiradas() {
+        int total = 0;
+        int liberadas;
+        do {
+            Integer resultado = transactionTemplate.execute(status -> liberarLoteExpirado());
+            liberadas = resultado != null ? resultado : 0;
+            total += liberadas;
+        } while (liberadas == loteBarrido);
+
+        if (total > 0) {
+            log.info("🧹 Reservas expiradas liberadas: {}", total);
+        }
+    }
+
+    private int liberarLoteExpirado() {
+        List<long[]> filas = jdbcTemplate.query(SQL_TOMAR_RESERVAS_EXPIRADAS,
+                (rs, n) -> new long[] { rs.getLong(1), rs.getLong(2) }, loteBarrido);
+        if (filas.isEmpty()) {
+            return 0;
+        }
+
+        TreeMap<Long, Integer> porProducto = new TreeMap<>();
+        for (long[] fila : filas) {
+            porProducto.merge(fila[0], (int) fila[1], Integer::sum);
+        }
+
+        List<Object[]> parametros = new ArrayList<>(porProducto.size());
+        for (Map.Entry<Long, Integer> entry : porProducto.entrySet()) {
+            parametros.add(new Object[] { entry.getValue(), entry.getKey() });
+        }
+        jdbcTemplate.batchUpdate(SQL_LIBERAR_STOCK, parametros);
+        productoDetalleCache.invalidar(porProducto.keySet());
+
+        return filas.size();
+    }
+
+    private Map<Long, Integer> tomarReservas(Long ordenId) {
+        Map<Long, Integer> reservado = new HashMap<>();
+        jdbcTemplate.query(SQL_TOMAR_RESERVAS_ORDEN,
+                rs -> { reservado.merge(rs.getLong(1), rs.getInt(2), Integer::sum); },
+                ordenId);
+        return reservado;
+    }
+}
@@ -0,0 +1,289 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.entities.Orden;
+import com.ecommerce.backend.entities.OrdenItem;
+import com.ecommerce.backend.entities.VentaVendedorDiaria;
+import com.ecommerce.backend.entities.VentaVendedorTotal;
+import com.ecommerce.backend.repositories.VentaVendedorDiariaRepository;
+import com.ecommerce.backend.repositories.VentaVendedorTotalRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Resumen de ventas por vendedor (tablas ventas_vendedor_diarias y ventas_vendedor_totales).
+ *
+ * Cada cambio de estado de una orden mueve sus líneas del estado anterior al nuevo con UPSERTs
+ * dentro de la misma transacción, así el resumen nunca queda desfasado de las órdenes.
+ * El historial completo se recorre una sola vez (backfill al arrancar con las tablas vacías);
+ * después, una reconciliación periódica corrige solo los últimos días, vendedor por vendedor.
+ * El día de cada venta es el de creación de la orden, en la zona horaria configurada.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumenVentasService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VentaVendedorDiariaRepository ventaVendedorDiariaRepository;
+    private final VentaVendedorTotalRepository ventaVendedorTotalRepository;
+
+    // Vacío = zona horaria del servidor
+    @Value("${app.ventas.zona-horaria:}")
+    private String zonaHoraria;
+
+    @Value("${app.ventas.reconciliar-dias:3}")
+    private int diasReconciliar;
+
+    private record Clave(LocalDate fecha, String estado) {}
+
+    private record Valores(long ordenes, long unidades, double ingresos) {
+        Valores menos(Valores otro) {
+            return new Valores(ordenes - otro.ordenes, unidades - otro.unidades, ingresos - otro.ingresos);
+        }
+
+        boolean esCero() {
+            return ordenes == 0 && unidades == 0 && Math.abs(ingresos) < 1e-6;
+        }
+    }
+
+    private record Acumulado(long unidades, double ingresos) {
+        Acumulado sumar(OrdenItem item) {
+            return new Acumulado(unidades + item.getCantidad(), ingresos + item.getSubtotal());
+        }
+    }
+
+    private static final String SQL_UPSERT_DIARIA =
+            "INSERT INTO ventas_vendedor_diarias (vendedor_sub, fecha, estado, ordenes, unidades, ingresos) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT ON CONSTRAINT uk_ventas_vendedor_dia DO UPDATE SET " +
+            "ordenes = ventas_vendedor_diarias.ordenes + EXCLUDED.ordenes, " +
+            "unidades = ventas_vendedor_diarias.unidades + EXCLUDED.unidades, " +
+            "ingresos = ventas_vendedor_diarias.ingresos + EXCLUDED.ingresos";
+
+    private static final String SQL_UPSERT_TOTAL =
+            "INSERT INTO ventas_vendedor_totales (vendedor_sub, estado, ordenes, unidades, ingresos) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT ON CONSTRAINT uk_ventas_vendedor_total DO UPDATE SET " +
+            "ordenes = ventas_vendedor_totales.ordenes + EXCLUDED.ordenes, " +
+            "unidades = ventas_vendedor_totales.unidades + EXCLUDED.unidades, " +
+            "ingresos = ventas_vendedor_totales.ingresos + EXCLUDED.ingresos";
+
+    // Espacio de claves de los advisory locks por vendedor (el segundo entero es hashtext(vendedor_sub)).
+    // Los cambios de estado toman el lock compartido; la reconciliación de un vendedor, el exclusivo.
+    private static final int ESPACIO_LOCKS = 23;
+
+    private static final String SQL_LOCK_VENDEDOR_COMPARTIDO =
+            "SELECT pg_advisory_xact_lock_shared(" + ESPACIO_LOCKS + ", hashtext(?))";
+
+    private static final String SQL_LOCK_VENDEDOR_EXCLUSIVO =
+            "SELECT pg_advisory_xact_lock(" + ESPACIO_LOCKS + ", hashtext(?))";
+
+    // Solo para el backfill único: otra instancia que arranca a la vez espera y luego ve las tablas llenas
+    private static final String SQL_BLOQUEAR_TABLAS =
+            "LOCK TABLE ventas_vendedor_diarias, ventas_vendedor_totales IN EXCLUSIVE MODE";
+
+    private static final String SQL_HAY_RESUMEN =
+            "SELECT EXISTS (SELECT 1 FROM ventas_vendedor_totales)";
+
+    private static final String SQL_BACKFILL_DIARIAS =
+            "INSERT INTO ventas_vendedor_diarias (vendedor_sub, fecha, estado, ordenes, unidades, ingresos) " +
+            "SELECT oi.vendedor_sub, CAST((o.creado_en AT TIME ZONE ?) AS date), o.estado, " +
+            "COUNT(DISTINCT o.id_orden), SUM(oi.cantidad), SUM(oi.cantidad * oi.precio_unitario) " +
+            "FROM orden_items oi JOIN ordenes o ON o.id_orden = oi.id_orden " +
+            "GROUP BY 1, 2, 3";
+
+    private static final String SQL_BACKFILL_TOTALES =
+            "INSERT INTO ventas_vendedor_totales (vendedor_sub, estado, ordenes, unidades, ingresos) " +
+            "SELECT vendedor_sub, estado, SUM(ordenes), SUM(unidades), SUM(ingresos) " +
+            "FROM ventas_vendedor_diarias GROUP BY vendedor_sub, estado";
+
+    private static final String SQL_VENDEDORES_EN_VENTANA =
+            "SELECT DISTINCT oi.vendedor_sub FROM orden_items oi JOIN ordenes o ON o.id_orden = oi.id_orden " +
+            "WHERE o.creado_en >= ? " +
+            "UNION SELECT vendedor_sub FROM ventas_vendedor_diarias WHERE fecha >= ?";
+
+    private static final String SQL_ESPERADO_VENDEDOR =
+            "SELECT CAST((o.creado_en AT TIME ZONE ?) AS date) AS fecha, o.estado, " +
+            "COUNT(DISTINCT o.id_orden), SUM(oi.cantidad), SUM(oi.cantidad * oi.precio_unitario) " +
+            "FROM orden_items oi JOIN ordenes o ON o.id_orden = oi.id_orden " +
+            "WHERE oi.vendedor_sub = ? AND o.creado_en >= ? " +
+            "GROUP BY 1, 2";
+
+    private static final String SQL_ACTUAL_VENDEDOR =
+            "SELECT fecha, estado, ordenes, unidades, ingresos FROM ventas_vendedor_diarias " +
+            "WHERE vendedor_sub = ? AND fecha >= ?";
+
+    // ============ MANTENIMIENTO INCREMENTAL ============
+
+    /**
+     * Registra que la orden pasó de estadoAnterior (null si es nueva) a estadoNuevo.
+     * Debe llamarse dentro de la transacción que cambia el estado.
+     */
+    public void registrarCambioEstado(Orden orden, String estadoAnterior, String estadoNuevo) {
+        if (estadoNuevo == null || estadoNuevo.equals(estadoAnterior) || orden.getItems().isEmpty()) {
+            return;
+        }
+        // Vendedores en orden alfabético: dos órdenes con vendedores en común bloquean filas en el mismo orden
+        Map<String, Acumulado> porVendedor = new TreeMap<>();
+        for (OrdenItem item : orden.getItems()) {
+            porVendedor.compute(item.getVendedorSub(),
+                    (vendedorSub, acumulado) -> (acumulado != null ? acumulado : new Acumulado(0, 0.0)).sumar(item));
+        }
+        Date fecha = Date.valueOf(orden.getCreadoEn().atZone(zona()).toLocalDate());
+        // Si una reconciliación está recalculando a alguno de estos vendedores, se espera a que termine
+        porVendedor.keySet().forEach(vendedorSub ->
+                jdbcTemplate.query(SQL_LOCK_VENDEDOR_COMPARTIDO, rs -> {}, vendedorSub));
+
+        List<Object[]> diarias = new ArrayList<>();
+        List<Object[]> totales = new ArrayList<>();
+        porVendedor.forEach((vendedorSub, acumulado) -> {
+            if (estadoAnterior != null) {
+                diarias.add(new Object[] { vendedorSub, fecha, estadoAnterior, -1, -acumulado.unidades(), -acumulado.ingresos() });
+                totales.add(new Object[] { vendedorSub, estadoAnterior, -1, -acumulado.unidades(), -acumulado.ingresos() });
+            }
+            diarias.add(new Object[] { vendedorSub, fecha, estadoNuevo, 1, acumulado.unidades(), acumulado.ingresos() });
+            totales.add(new Object[] { vendedorSub, estadoNuevo, 1, acumulado.unidades(), acumulado.ingresos() });
+        });
+
+        jdbcTemplate.batchUpdate(SQL_UPSERT_DIARIA, diarias);
+        jdbcTemplate.batchUpdate(SQL_UPSERT_TOTAL, totales);
+    }
+
+    // ============ BACKFILL Y RECONCILIACIÓN ============
+
+    /**
+     * Backfill único desde el historial: solo si el resumen está vacío (primer despliegue).
+     * Corre al crear el bean, antes de que el servidor acepte requests, así no compite con checkouts.
+     */
+    @PostConstruct
+    void backfillInicial() {
+        long inicio = System.currentTimeMillis();
+        Integer filas = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(SQL_BLOQUEAR_TABLAS);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_HAY_RESUMEN, Boolean.class))) {
+                return null;
+            }
+            int insertadas = jdbcTemplate.update(SQL_BACKFILL_DIARIAS, zona().getId());
+            jdbcTemplate.update(SQL_BACKFILL_TOTALES);
+            return insertadas;
+        });
+        if (filas != null) {
+            log.info("📈 Resumen de ventas inicializado desde el historial: {} filas diarias en {} ms",
+                    filas, System.currentTimeMillis() - inicio);
+        }
+    }
+
+    /**
+     * Corrige desvíos de los últimos días: por cada vendedor con actividad en la ventana recalcula
+     * sus filas diarias desde las órdenes y aplica la diferencia (también a los totales).
+     * Cada vendedor va en su propia transacción con su lock exclusivo: solo espera a los cambios
+     * de estado de ese vendedor y nunca bloquea la tabla completa.
+     */
+    @Scheduled(initialDelayString = "${app.ventas.reconciliar-inicial-ms:60000}",
+               fixedDelayString = "${app.ventas.reconciliar-ms:3600000}")
+    public void reconciliarVentana() {
+        LocalDate desde = hoy().minusDays(Math.max(diasReconciliar, 1) - 1L);
+        Timestamp desdeInstante = Timestamp.from(desde.atStartOfDay(zona()).toInstant());
+
+        List<String> vendedores = jdbcTemplate.queryForList(SQL_VENDEDORES_EN_VENTANA, String.class,
+                desdeInstante, Date.valueOf(desde));
+        int corregidos = 0;
+        for (String vendedorSub : vendedores) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                        reconciliarVendedor(vendedorSub, desde, desdeInstante)))) {
+                    corregidos++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("⚠️ No se pudo reconciliar el resumen de ventas de {}: {}", vendedorSub, e.getMessage());
+            }
+        }
+        if (corregidos > 0) {
+            log.info("🔁 Resumen de ventas reconciliado desde {}: {} de {} vendedores corregidos",
+                    desde, corregidos, vendedores.size());
+        }
+    }
+
+    private boolean reconciliarVendedor(String vendedorSub, LocalDate desde, Timestamp desdeInstante) {
+        // Espera a los cambios de estado en curso de este vendedor; la siguiente lectura ya los ve
+        jdbcTemplate.query(SQL_LOCK_VENDEDOR_EXCLUSIVO, rs -> {}, vendedorSub);
+
+        Map<Clave, Valores> esperado = new HashMap<>();
+        jdbcTemplate.query(SQL_ESPERADO_VENDEDOR, rs -> {
+            esperado.put(new Clave(rs.getDate(1).toLocalDate(), rs.getString(2)),
+                    new Valores(rs.getLong(3), rs.getLong(4), rs.getDouble(5)));
+        }, zona().getId(), vendedorSub, desdeInstante);
+
+        Map<Clave, Valores> actual = new HashMap<>();
+        jdbcTemplate.query(SQL_ACTUAL_VENDEDOR, rs -> {
+            actual.put(new Clave(rs.getDate(1).toLocalDate(), rs.getString(2)),
+                    new Valores(rs.getLong(3), rs.getLong(4), rs.getDouble(5)));
+        }, vendedorSub, Date.valueOf(desde));
+
+        Valores cero = new Valores(0, 0, 0.0);
+        Set<Clave> claves = new HashSet<>(esperado.keySet());
+        claves.addAll(actual.keySet());
+
+        List<Object[]> diarias = new ArrayList<>();
+        List<Object[]> totales = new ArrayList<>();
+        for (Clave clave : claves) {
+            Valores diferencia = esperado.getOrDefault(clave, cero).menos(actual.getOrDefault(clave, cero));
+            if (diferencia.esCero()) {
+                continue;
+            }
+            diarias.add(new Object[] { vendedorSub, Date.valueOf(clave.fecha()), clave.estado(),
+                    diferencia.ordenes(), diferencia.unidades(), diferencia.ingresos() });
+            totales.add(new Object[] { vendedorSub, clave.estado(),
+                    diferencia.ordenes(), diferencia.unidades(), diferencia.ingresos() });
+        }
+        if (diarias.isEmpty()) {
+            return false;
+        }
+        jdbcTemplate.batchUpdate(SQL_UPSERT_DIARIA, diarias);
+        jdbcTemplate.batchUpdate(SQL_UPSERT_TOTAL, totales);
+        return true;
+    }
+
+    // ============ CONSULTA ============
+
+    @Transactional(readOnly = true)
+    public List<VentaVendedorTotal> totales(String vendedorSub) {
+        return ventaVendedorTotalRepository.findByVendedorSub(vendedorSub);
+    }
+
+    /**
+     * Filas diarias desde la fecha indicada (inclusive): a lo sumo 3 por día
+     */
+    @Transactional(readOnly = true)
+    public List<VentaVendedorDiaria> ventasDiarias(String vendedorSub, LocalDate desde) {
+        return ventaVendedorDiariaRepository.findByVendedorSubAndFechaGreaterThanEqualOrderByFechaAsc(vendedorSub, desde);
+    }
+
+    public LocalDate hoy() {
+        return LocalDate.now(zona());
+    }
+
+    private ZoneId zona() {
+        return (zonaHoraria == null || zonaHoraria.isBlank()) ? ZoneId.systemDefault() : ZoneId.of(zonaHoraria);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecommerce.backend.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Números de orden "ORD-yyyyMMdd-XXXXXXX" con un correlativo global tomado de la secuencia
+ * ordenes_numero_seq de Postgres, reservado por bloques.
+ *
+ * Cada instancia pide un bloque entero con un solo nextval (la secuencia avanza de a "bloque")
+ * y lo reparte en memoria con un AtomicLong, así el camino normal no toca la BD ni toma locks.
+ * El correlativo nunca se repite entre instancias ni entre días; va en base 36 con ancho fijo
+ * (7 caracteres, ~78 mil millones de valores) para que el orden alfabético siga al numérico.
+ * Entre instancias el orden es por día y, dentro del día, por bloque reservado.
+ */
+@Slf4j
+@Service
+public class SecuenciaNumeroOrdenService implements GeneradorNumeroOrden {
+
+    private static final String PREFIJO = "ORD-";
+    private static final int ANCHO_CORRELATIVO = 7;
+    private static final String SECUENCIA = "ordenes_numero_seq";
+
+    private record Bloque(AtomicLong siguiente, long fin) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int bloqueConfigurado;
+
+    private volatile Bloque bloque;
+    // Incremento real de la secuencia (se fija al arrancar)
+    private long tamanioBloque;
+
+    public SecuenciaNumeroOrdenService(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.ordenes.numero.bloque:100}") int bloqueConfigurado) {
+        if (bloqueConfigurado <= 0) {
+            throw new IllegalArgumentException("app.ordenes.numero.bloque debe ser mayor a 0");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloqueConfigurado = bloqueConfigurado;
+    }
+
+    @Override
+    public String siguiente() {
+        while (true) {
+            Bloque actual = bloque;
+            if (actual != null) {
+                long valor = actual.siguiente().getAndIncrement();
+                if (valor < actual.fin()) {
+                    return formatear(LocalDate.now(), valor);
+                }
+            }
+            renovar(actual);
+        }
+    }
+
+    /**
+     * Crea la secuencia al arrancar, en autocommit y antes de que el servidor acepte requests:
+     * en el camino de checkout solo queda el nextval (que no se deshace con un rollback).
+     * Se usa el incremento real de la BD y no el configurado: si otra instancia la creó con
+     * otro tamaño, los bloques igual no se solapan.
+     */
+    @PostConstruct
+    void prepararSecuencia() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SECUENCIA +
+                " START WITH 1 INCREMENT BY " + bloqueConfigurado);
+        tamanioBloque = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, SECUENCIA);
+        log.info("🔢 Secuencia de números de orden lista (bloques de {})", tamanioBloque);
+    }
+
+    /**
+     * Solo un hilo reserva el bloque nuevo; los demás reintentan con el que quedó publicado
+     */
+    private synchronized void renovar(Bloque agotado) {
+        if (bloque != agotado) {
+            return;
+        }
+        Long inicio = jdbcTemplate.queryForObject("SELECT nextval('" + SECUENCIA + "')", Long.class);
+        bloque = new Bloque(new AtomicLong(inicio), inicio + tamanioBloque);
+        log.debug("🔢 Bloque de números de orden reservado: [{}, {})", inicio, inicio + tamanioBloque);
+    }
+
+    static String formatear(LocalDate fecha, long correlativo) {
+        String base36 = Long.toString(correlativo, 36).toUpperCase(Locale.ROOT);
+        if (base36.length() > ANCHO_CORRELATIVO) {
+            throw new IllegalStateException("Correlativo de número de orden agotado: " + correlativo);
+        }
+        return PREFIJO + fecha.format(DateTimeFormatter.BASIC_ISO_DATE) + "-"
+                + "0".repeat(ANCHO_CORRELATIVO - base36.length()) + base36;
+    }
+}
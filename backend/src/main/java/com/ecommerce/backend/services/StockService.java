@@ -1,18 +1,27 @@
 package com.ecommerce.backend.services;
 
+import com.ecommerce.backend.cache.CarritoCache;
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
 import com.ecommerce.backend.entities.Carrito;
 import com.ecommerce.backend.entities.Producto;
 import com.ecommerce.backend.exceptions.StockInsuficienteException;
 import com.ecommerce.backend.repositories.CarritoRepository;
 import com.ecommerce.backend.repositories.ProductoRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 @Slf4j
 @Service
@@ -21,6 +30,15 @@ public class StockService {
 
     private final ProductoRepository productoRepository;
     private final CarritoRepository carritoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductoDetalleCache productoDetalleCache;
+    private final CarritoCache carritoCache;
+    private final UsuarioIdCache usuarioIdCache;
+    private final EntityManager entityManager;
+
+    private static final String SQL_REDUCIR_STOCK =
+            "UPDATE productos SET stock = stock - ?, actualizado_en = now() " +
+            "WHERE id_producto = ? AND stock - stock_reservado >= ?";
 
     /**
      * Reducir stock cuando se realiza un pedido
@@ -29,34 +47,22 @@ public class StockService {
     public void reducirStockPorPedido(String auth0Sub) {
         log.info("📦 Reduciendo stock por pedido del usuario: {}", auth0Sub);
         
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<Carrito> carritos = carritoRepository.findByUsuarioIdOrderByAgregadoEnDesc(usuarioIdCache.requerirId(auth0Sub));
         
         if (carritos.isEmpty()) {
             log.warn("⚠️ No hay productos en el carrito para reducir stock");
             return;
         }
 
+        Map<Long, Integer> productosYCantidades = new HashMap<>();
         for (Carrito carrito : carritos) {
-            Producto producto = carrito.getProducto();
-            Integer cantidad = carrito.getCantidad();
-            
-            if (producto.getStock() < cantidad) {
-                throw new StockInsuficienteException(
-                    String.format("Stock insuficiente para '%s'. Stock disponible: %d, Cantidad solicitada: %d", 
-                        producto.getTitulo(), producto.getStock(), cantidad)
-                );
-            }
-            
-            // Reducir stock
-            producto.setStock(producto.getStock() - cantidad);
-            productoRepository.save(producto);
-            
-            log.info("✅ Stock reducido - Producto: {}, Cantidad: {}, Stock restante: {}", 
-                    producto.getTitulo(), cantidad, producto.getStock());
+            productosYCantidades.merge(carrito.getProducto().getId(), carrito.getCantidad(), Integer::sum);
         }
+        reducirStockEnLote(productosYCantidades);
 
         // Limpiar carrito después de procesar el pedido
-        carritoRepository.deleteByAuth0Sub(auth0Sub);
+        carritoRepository.deleteByUsuarioId(usuarioIdCache.requerirId(auth0Sub));
+        carritoCache.invalidar(auth0Sub);
         log.info("✅ Carrito limpiado después del pedido");
     }
 
@@ -65,28 +71,85 @@ public class StockService {
      */
     @Transactional
     public void reducirStock(Map<Long, Integer> productosYCantidades) {
-        log.info("📦 Reduciendo stock para {} productos", productosYCantidades.size());
-        
-        for (Map.Entry<Long, Integer> entry : productosYCantidades.entrySet()) {
-            Long productoId = entry.getKey();
+        reducirStockEnLote(productosYCantidades);
+    }
+
+    /**
+     * Reducir stock de varios productos en un solo batch JDBC.
+     * Los IDs se procesan en orden ascendente para que dos pedidos con productos en común
+     * bloqueen las filas en el mismo orden y no haya deadlocks.
+     * Si algún producto no alcanza, se lanza excepción con todos los IDs faltantes y
+     * la transacción completa hace rollback (ningún stock queda reducido).
+     *
+     * El UPDATE va por JDBC, fuera del persistence context: antes se hace flush (para que un
+     * Producto modificado en esta transacción no pise después el stock nuevo) y al terminar se
+     * refrescan los Producto ya cargados, así quien los siga usando ve el stock reducido.
+     */
+    @Transactional
+    public void reducirStockEnLote(Map<Long, Integer> productosYCantidades) {
+        if (productosYCantidades == null || productosYCantidades.isEmpty()) {
+            return;
+        }
+        log.info("📦 Reduciendo stock en lote para {} productos", productosYCantidades.size());
+
+        TreeMap<Long, Integer> ordenados = new TreeMap<>(productosYCantidades);
+        List<Object[]> parametros = new ArrayList<>(ordenados.size());
+        for (Map.Entry<Long, Integer> entry : ordenados.entrySet()) {
             Integer cantidad = entry.getValue();
-            
-            Producto producto = productoRepository.findById(productoId)
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado con ID: " + productoId));
-            
-            if (producto.getStock() < cantidad) {
-                throw new StockInsuficienteException(
-                    String.format("Stock insuficiente para '%s'. Stock disponible: %d, Cantidad solicitada: %d", 
-                        producto.getTitulo(), producto.getStock(), cantidad)
-                );
+            if (cantidad == null || cantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad a reducir debe ser mayor a 0 (producto " + entry.getKey() + ")");
             }
-            
-            producto.setStock(producto.getStock() - cantidad);
-            productoRepository.save(producto);
-            
-            log.info("✅ Stock reducido - Producto: {} (ID: {}), Cantidad: {}, Stock restante: {}", 
-                    producto.getTitulo(), productoId, cantidad, producto.getStock());
+            parametros.add(new Object[] { cantidad, entry.getKey(), cantidad });
         }
+
+        entityManager.flush();
+        int[] filas = jdbcTemplate.batchUpdate(SQL_REDUCIR_STOCK, parametros);
+        refrescarCargados(ordenados.keySet());
+        productoDetalleCache.invalidar(ordenados.keySet());
+
+        List<Long> sinStock = new ArrayList<>();
+        int i = 0;
+        for (Long productoId : ordenados.keySet()) {
+            if (filas[i++] == 0) {
+                sinStock.add(productoId);
+            }
+        }
+
+        lanzarSiFaltaStock(ordenados, sinStock);
+
+        log.info("✅ Stock reducido en lote para {} productos", ordenados.size());
+    }
+
+    /**
+     * Refresca desde la base los Producto de estos IDs que ya estén cargados en el persistence context.
+     * getReference no consulta la base: devuelve la instancia gestionada o un proxy sin inicializar,
+     * que ya leerá el valor nuevo cuando se use.
+     */
+    private void refrescarCargados(Collection<Long> productosIds) {
+        for (Long productoId : productosIds) {
+            Producto producto = entityManager.getReference(Producto.class, productoId);
+            if (Hibernate.isInitialized(producto)) {
+                entityManager.refresh(producto);
+            }
+        }
+    }
+
+    /**
+     * Lanza StockInsuficienteException con el detalle de los productos faltantes, si los hay.
+     * Solo en este camino de error se consultan los productos para armar el mensaje.
+     */
+    void lanzarSiFaltaStock(Map<Long, Integer> solicitados, List<Long> sinStock) {
+        if (sinStock.isEmpty()) {
+            return;
+        }
+        String detalle = productoRepository.findAllById(sinStock).stream()
+                .map(p -> String.format("'%s' (disponible: %d, solicitado: %d)",
+                        p.getTitulo(), p.getStockDisponible(), solicitados.get(p.getId())))
+                .collect(Collectors.joining(", "));
+        throw new StockInsuficienteException(
+            "Stock insuficiente para: " + (detalle.isEmpty() ? sinStock.toString() : detalle),
+            sinStock
+        );
     }
 
     /**
@@ -100,15 +163,13 @@ public class StockService {
             Long productoId = entry.getKey();
             Integer cantidad = entry.getValue();
             
-            Producto producto = productoRepository.findById(productoId)
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado con ID: " + productoId));
-            
-            producto.setStock(producto.getStock() + cantidad);
-            productoRepository.save(producto);
+            if (productoRepository.aumentarStockAtomico(productoId, cantidad) == 0) {
+                throw new RuntimeException("Producto no encontrado con ID: " + productoId);
+            }
             
-            log.info("✅ Stock restaurado - Producto: {} (ID: {}), Cantidad: {}, Stock actual: {}", 
-                    producto.getTitulo(), productoId, cantidad, producto.getStock());
+            log.info("✅ Stock restaurado - Producto ID: {}, Cantidad: {}", productoId, cantidad);
         }
+        productoDetalleCache.invalidar(productosYCantidades.keySet());
     }
 
     /**
@@ -116,13 +177,13 @@ public class StockService {
      */
     @Transactional(readOnly = true)
     public boolean verificarStockDisponible(String auth0Sub) {
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<Carrito> carritos = carritoRepository.findByUsuarioIdOrderByAgregadoEnDesc(usuarioIdCache.requerirId(auth0Sub));
         
         for (Carrito carrito : carritos) {
             Producto producto = carrito.getProducto();
-            if (producto.getStock() < carrito.getCantidad()) {
+            if (producto.getStockDisponible() < carrito.getCantidad()) {
                 log.warn("❌ Stock insuficiente - Producto: {}, Stock: {}, Requerido: {}", 
-                        producto.getTitulo(), producto.getStock(), carrito.getCantidad());
+                        producto.getTitulo(), producto.getStockDisponible(), carrito.getCantidad());
                 return false;
             }
         }
@@ -138,7 +199,7 @@ public class StockService {
     public Map<String, Object> obtenerResumenStock(String auth0Sub) {
         log.info("📊 Obteniendo resumen de stock para usuario: {}", auth0Sub);
 
-        List<Carrito> carritos = carritoRepository.findByUsuarioAuth0SubOrderByAgregadoEnDesc(auth0Sub);
+        List<Carrito> carritos = carritoRepository.findByUsuarioIdOrderByAgregadoEnDesc(usuarioIdCache.requerirId(auth0Sub));
         
         // SOLUCIÓN: Usar un array para poder modificar el valor dentro del lambda
         final boolean[] stockSuficiente = {true};
@@ -146,7 +207,7 @@ public class StockService {
         List<Map<String, Object>> productosConStock = carritos.stream()
                 .map(carrito -> {
                     Producto producto = carrito.getProducto();
-                    boolean suficiente = producto.getStock() >= carrito.getCantidad();
+                    boolean suficiente = producto.getStockDisponible() >= carrito.getCantidad();
                     
                     if (!suficiente) {
                         stockSuficiente[0] = false;
@@ -157,7 +218,7 @@ public class StockService {
                     productoInfo.put("productoId", producto.getId());
                     productoInfo.put("productoNombre", producto.getTitulo());
                     productoInfo.put("cantidadRequerida", carrito.getCantidad());
-                    productoInfo.put("stockDisponible", producto.getStock());
+                    productoInfo.put("stockDisponible", producto.getStockDisponible());
                     productoInfo.put("suficiente", suficiente);
                     
                     return productoInfo;
@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.ecommerce.backend.cache.UsuarioIdCache;
 import com.ecommerce.backend.dto.Auth0UserInfo;
 import com.ecommerce.backend.entities.Usuario;
 import com.ecommerce.backend.repositories.UsuarioRepository;
@@ -17,6 +18,7 @@ import org.springframework.dao.DataIntegrityViolationException;
 public class UsuarioServiceImplement implements UsuarioService {
 
   private final UsuarioRepository usuarioRepository;
+  private final UsuarioIdCache usuarioIdCache;
   private final Auth0UserInfoService auth0UserInfoService;
 
   @Override
@@ -62,6 +64,7 @@ public class UsuarioServiceImplement implements UsuarioService {
       if (userInfo.getPicture() != null) u.setPictureUrl(userInfo.getPicture());
       
       Usuario saved = usuarioRepository.save(u);
+      usuarioIdCache.registrar(saved);
       log.info("Usuario actualizado: id={}, email={}", saved.getId(), saved.getEmail());
       return saved;
     }
@@ -77,12 +80,15 @@ public class UsuarioServiceImplement implements UsuarioService {
 
     try {
       Usuario saved = usuarioRepository.save(u);
+      usuarioIdCache.registrar(saved);
       log.info("Nuevo usuario creado: id={}, email={}, nombre={} {}", 
         saved.getId(), saved.getEmail(), saved.getNombre(), saved.getApellido());
       return saved;
     } catch (DataIntegrityViolationException dive) {
       log.warn("Constraint violation al crear usuario, intentando recuperar existente");
-      return usuarioRepository.findByAuth0Sub(sub).orElseThrow(() -> dive);
+      Usuario existente = usuarioRepository.findByAuth0Sub(sub).orElseThrow(() -> dive);
+      usuarioIdCache.registrar(existente);
+      return existente;
     }
   }
 
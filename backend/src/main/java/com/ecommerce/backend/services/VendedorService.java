@@ -1,52 +1,76 @@
 package com.ecommerce.backend.services;
 
+import com.ecommerce.backend.dto.CursorKeyset;
+import com.ecommerce.backend.dto.OrdenItemResumen;
+import com.ecommerce.backend.dto.OrdenVendedorDto;
+import com.ecommerce.backend.dto.PaginaCursorDto;
+import com.ecommerce.backend.dto.ProductoMasVendido;
 import com.ecommerce.backend.entities.*;
 import com.ecommerce.backend.repositories.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VendedorService {
     
+    private static final int FEED_LIMITE_POR_DEFECTO = 10;
+    private static final int FEED_LIMITE_MAXIMO = 50;
+    private static final int DIAS_RECIENTES = 30;
+    private static final int TOP_POR_DEFECTO = 5;
+    private static final int TOP_MAXIMO = 100;
+    
     private final OrdenRepository ordenRepository;
     private final ProductoRepository productoRepository;
+    private final ResumenVentasService resumenVentasService;
     
     /**
-     * Obtener estadísticas del vendedor
+     * Obtener estadísticas del vendedor desde el resumen de ventas (ver ResumenVentasService):
+     * una fila por estado para los totales y a lo sumo 3 por día para la última semana.
+     * Los importes son la parte del vendedor en cada orden, no el total de la orden.
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> obtenerEstadisticasVendedor(String auth0Sub) {
         log.info("📊 Obteniendo estadísticas para vendedor: {}", auth0Sub);
         
         Map<String, Object> estadisticas = new HashMap<>();
         
-        // 1. Órdenes del vendedor
-        List<Orden> ordenesVendedor = ordenRepository.findByVendedorSub(auth0Sub);
-        List<Orden> ordenesPagadas = ordenesVendedor.stream()
-                .filter(o -> "PAGADO".equals(o.getEstado()))
-                .toList();
+        // 1. Totales históricos por estado
+        Map<String, VentaVendedorTotal> totales = new HashMap<>();
+        for (VentaVendedorTotal total : resumenVentasService.totales(auth0Sub)) {
+            totales.put(total.getEstado(), total);
+        }
+        VentaVendedorTotal pagadas = totales.get("PAGADO");
+        long ordenesPagadas = pagadas != null ? pagadas.getOrdenes() : 0L;
         
         // 2. Ventas totales
-        Double ventasTotales = ordenesPagadas.stream()
-                .mapToDouble(Orden::getTotal)
-                .sum();
+        double ventasTotales = pagadas != null ? pagadas.getIngresos() : 0.0;
         estadisticas.put("totalVentas", ventasTotales);
         
-        // 3. Órdenes hoy
-        LocalDate hoy = LocalDate.now();
-        long ordenesHoy = ordenesVendedor.stream()
-                .filter(o -> {
-                    LocalDate fechaOrden = o.getCreadoEn().atZone(ZoneId.systemDefault()).toLocalDate();
-                    return fechaOrden.equals(hoy);
-                })
-                .count();
+        // 3. Órdenes hoy y ventas de los últimos 7 días (una sola lectura de filas diarias)
+        LocalDate hoy = resumenVentasService.hoy();
+        Map<String, Double> ventasUltimaSemana = new LinkedHashMap<>();
+        for (int i = 6; i >= 0; i--) {
+            ventasUltimaSemana.put(hoy.minusDays(i).toString(), 0.0);
+        }
+        long ordenesHoy = 0;
+        for (VentaVendedorDiaria dia : resumenVentasService.ventasDiarias(auth0Sub, hoy.minusDays(6))) {
+            if (dia.getFecha().equals(hoy)) {
+                ordenesHoy += dia.getOrdenes();
+            }
+            if ("PAGADO".equals(dia.getEstado())) {
+                ventasUltimaSemana.merge(dia.getFecha().toString(), dia.getIngresos(), Double::sum);
+            }
+        }
         estadisticas.put("ordenesHoy", ordenesHoy);
         
         // 4. Productos activos (con stock > 0)
@@ -60,97 +84,87 @@ public class VendedorService {
         estadisticas.put("productosActivos", productosActivos);
         
         // 5. Promedio por venta
-        double promedioVenta = ordenesPagadas.isEmpty() ? 0.0 : 
-                ventasTotales / ordenesPagadas.size();
+        double promedioVenta = ordenesPagadas == 0 ? 0.0 : ventasTotales / ordenesPagadas;
         estadisticas.put("promedioVenta", promedioVenta);
         
         // 6. Órdenes por estado
         Map<String, Long> ordenesPorEstado = new HashMap<>();
-        ordenesPorEstado.put("pendiente", ordenesVendedor.stream()
-                .filter(o -> "PENDIENTE".equals(o.getEstado()))
-                .count());
-        ordenesPorEstado.put("pagado", (long) ordenesPagadas.size());
-        ordenesPorEstado.put("cancelado", ordenesVendedor.stream()
-                .filter(o -> "CANCELADO".equals(o.getEstado()))
-                .count());
-        
+        ordenesPorEstado.put("pendiente", ordenesEn(totales, "PENDIENTE"));
+        ordenesPorEstado.put("pagado", ordenesPagadas);
+        ordenesPorEstado.put("cancelado", ordenesEn(totales, "CANCELADO"));
         estadisticas.put("ordenesPorEstado", ordenesPorEstado);
         
         // 7. Ventas últimos 7 días
-        Map<String, Double> ventasUltimaSemana = new HashMap<>();
-        
-        for (int i = 6; i >= 0; i--) {
-            LocalDate fecha = hoy.minusDays(i);
-            final LocalDate fechaFinal = fecha; // Para usar en lambda
-            
-            double ventasDia = ordenesPagadas.stream()
-                    .filter(o -> {
-                        LocalDate fechaOrden = o.getCreadoEn().atZone(ZoneId.systemDefault()).toLocalDate();
-                        return fechaOrden.equals(fechaFinal);
-                    })
-                    .mapToDouble(Orden::getTotal)
-                    .sum();
-                    
-            ventasUltimaSemana.put(fecha.toString(), ventasDia);
-        }
-        
         estadisticas.put("ventasUltimaSemana", ventasUltimaSemana);
         
         log.info("✅ Estadísticas calculadas: {}", estadisticas);
         return estadisticas;
     }
     
+    private long ordenesEn(Map<String, VentaVendedorTotal> totales, String estado) {
+        VentaVendedorTotal total = totales.get(estado);
+        return total != null ? total.getOrdenes() : 0L;
+    }
+    
     /**
-     * Obtener órdenes recientes del vendedor (últimos 30 días)
+     * Obtener órdenes recientes del vendedor (últimos 30 días): lee solo las 10 filas que se muestran
      */
+    @Transactional(readOnly = true)
     public List<Orden> obtenerOrdenesRecientes(String auth0Sub) {
-        Instant hace30Dias = Instant.now().minusSeconds(30 * 24 * 60 * 60);
-        
-        return ordenRepository.findByVendedorSub(auth0Sub).stream()
-                .filter(o -> o.getCreadoEn().isAfter(hace30Dias))
-                .sorted((o1, o2) -> o2.getCreadoEn().compareTo(o1.getCreadoEn())) // Más recientes primero
-                .limit(10) // Solo las 10 más recientes
-                .toList();
+        Instant hace30Dias = Instant.now().minus(Duration.ofDays(DIAS_RECIENTES));
+        return ordenRepository.findFeedVendedor(auth0Sub, hace30Dias, null, null, null,
+                FEED_LIMITE_POR_DEFECTO);
     }
     
     /**
-     * Obtener productos más vendidos del vendedor
+     * Feed paginado de órdenes que incluyen productos del vendedor, más recientes primero.
+     * La ventana [desde, hasta) es opcional; cada orden aparece una sola vez.
+     * Dos consultas por página: cabeceras y, con un IN, solo las líneas de este vendedor.
      */
-    public List<Map<String, Object>> obtenerProductosMasVendidos(String auth0Sub) {
-        List<Orden> ordenesVendedor = ordenRepository.findByVendedorSub(auth0Sub).stream()
-                .filter(o -> "PAGADO".equals(o.getEstado()))
-                .toList();
-        
-        // Agrupar productos por cantidad vendida
-        Map<Long, Map<String, Object>> productosMap = new HashMap<>();
-        
-        for (Orden orden : ordenesVendedor) {
-            for (var item : orden.getItems()) {
-                if (auth0Sub.equals(item.getVendedorSub())) {
-                    Producto producto = item.getProducto();
-                    Long productoId = producto.getId();
-                    
-                    Map<String, Object> datos = productosMap.getOrDefault(productoId, new HashMap<>());
-                    datos.put("id", productoId);
-                    datos.put("nombre", producto.getTitulo());
-                    datos.put("precio", producto.getPrecio());
-                    datos.put("imagenPrincipal", producto.getImagenPrincipal());
-                    datos.put("stock", producto.getStock());
-                    datos.put("cantidadVendida", 
-                        ((Integer) datos.getOrDefault("cantidadVendida", 0)) + item.getCantidad());
-                    datos.put("totalVendido", 
-                        ((Double) datos.getOrDefault("totalVendido", 0.0)) + item.getSubtotal());
-                    
-                    productosMap.put(productoId, datos);
-                }
-            }
+    @Transactional(readOnly = true)
+    public PaginaCursorDto<OrdenVendedorDto> obtenerFeed(String auth0Sub, Instant desde, Instant hasta,
+                                                         String cursor, Integer limite) {
+        if (desde != null && hasta != null && !desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("La fecha 'desde' debe ser anterior a 'hasta'");
         }
-        
-        // Ordenar por cantidad vendida (descendente)
-        return productosMap.values().stream()
-                .sorted((a, b) -> 
-                    ((Integer) b.get("cantidadVendida")).compareTo((Integer) a.get("cantidadVendida")))
-                .limit(5) // Top 5 productos
+        int tamanio = (limite == null || limite <= 0) ? FEED_LIMITE_POR_DEFECTO : Math.min(limite, FEED_LIMITE_MAXIMO);
+        CursorKeyset pos = CursorKeyset.decodificar(cursor);
+
+        // Se pide un elemento extra para saber si hay página siguiente sin hacer COUNT
+        List<Orden> filas = ordenRepository.findFeedVendedor(auth0Sub, desde, hasta,
+                pos != null ? pos.creadoEn() : null, pos != null ? pos.id() : null, tamanio + 1);
+
+        boolean hayMas = filas.size() > tamanio;
+        List<Orden> ordenes = hayMas ? filas.subList(0, tamanio) : filas;
+        if (ordenes.isEmpty()) {
+            return new PaginaCursorDto<>(List.of(), null, false);
+        }
+
+        Map<Long, List<OrdenItemResumen>> lineasPorOrden = ordenRepository
+                .findItemsResumenDeVendedor(ordenes.stream().map(Orden::getId).toList(), auth0Sub)
+                .stream()
+                .collect(Collectors.groupingBy(OrdenItemResumen::getOrdenId));
+
+        List<OrdenVendedorDto> items = ordenes.stream()
+                .map(o -> OrdenVendedorDto.desde(o, lineasPorOrden.getOrDefault(o.getId(), List.of())))
                 .toList();
+
+        Orden ultima = ordenes.get(ordenes.size() - 1);
+        String siguiente = hayMas ? CursorKeyset.codificar(ultima.getCreadoEn(), ultima.getId()) : null;
+        return new PaginaCursorDto<>(items, siguiente, hayMas);
+    }
+    
+    /**
+     * Obtener los K productos más vendidos del vendedor (órdenes pagadas), opcionalmente en [desde, hasta)
+     */
+    @Transactional(readOnly = true)
+    public List<ProductoMasVendido> obtenerProductosMasVendidos(String auth0Sub, Integer k, Instant desde, Instant hasta) {
+        int limite = (k == null || k <= 0) ? TOP_POR_DEFECTO : Math.min(k, TOP_MAXIMO);
+        Instant inicio = desde != null ? desde : Instant.EPOCH;
+        Instant fin = hasta != null ? hasta : Instant.now();
+        if (!inicio.isBefore(fin)) {
+            throw new IllegalArgumentException("La fecha 'desde' debe ser anterior a 'hasta'");
+        }
+        return ordenRepository.findMasVendidosPorVendedor(auth0Sub, inicio, fin, limite);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package com.ecommerce.backend;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base de los tests de integración: esquema real de Postgres (perfil "integracion") y sin la
+ * transacción envolvente de @DataJpaTest, para que cada operación haga commit como en producción
+ * y los tests concurrentes vean lo que hacen los demás hilos.
+ *
+ * Los datos no se borran: cada test crea sus propios usuarios y productos con claves únicas.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("integracion")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public abstract class IntegracionPostgresTest {
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    protected String nuevoSub() {
+        return "test|" + UUID.randomUUID();
+    }
+
+    protected Long crearUsuario(String auth0Sub) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO usuarios (auth0_sub, email, creado_en) VALUES (?, ?, now()) RETURNING id_usuario",
+                Long.class, auth0Sub, auth0Sub + "@test.local");
+    }
+
+    protected Long crearProducto(Long ownerId, String ownerSub, double precio, int stock) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO productos (titulo, estado, precio, stock, categoria, id_usuario, owner_sub, creado_en) " +
+                "VALUES ('Producto de prueba', 'nuevo', ?, ?, 'pruebas', ?, ?, now()) RETURNING id_producto",
+                Long.class, precio, stock, ownerId, ownerSub);
+    }
+
+    /**
+     * Corre las tareas a la vez (todas arrancan juntas) y devuelve sus resultados en orden
+     */
+    protected <T> List<T> enParalelo(List<Callable<T>> tareas) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tareas.size());
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<T>> futuros = tareas.stream()
+                    .map(tarea -> executor.submit(() -> {
+                        largada.await();
+                        return tarea.call();
+                    }))
+                    .toList();
+            largada.countDown();
+            List<T> resultados = new ArrayList<>();
+            for (Future<T> futuro : futuros) {
+                resultados.add(futuro.get(30, TimeUnit.SECONDS));
+            }
+            return resultados;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
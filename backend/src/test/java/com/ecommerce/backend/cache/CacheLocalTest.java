@@ -0,0 +1,59 @@
+package com.ecommerce.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheLocalTest {
+
+    private final CacheLocal<String, String> cache = new CacheLocal<>(100, 60_000);
+
+    @Test
+    void invalidarOtraClaveDuranteLaCargaNoImpideCachear() {
+        cache.obtener("a", k -> {
+            cache.invalidar("b");
+            return "valor-a";
+        });
+
+        assertThat(cache.obtenerSiPresente("a")).isEqualTo("valor-a");
+    }
+
+    @Test
+    void invalidarLaMismaClaveDuranteLaCargaNoGuardaElValorViejo() {
+        String devuelto = cache.obtener("a", k -> {
+            cache.invalidar("a");
+            return "viejo";
+        });
+
+        assertThat(devuelto).isEqualTo("viejo");
+        assertThat(cache.obtenerSiPresente("a")).isNull();
+        assertThat(cache.obtener("a", k -> "nuevo")).isEqualTo("nuevo");
+        assertThat(cache.obtenerSiPresente("a")).isEqualTo("nuevo");
+    }
+
+    @Test
+    void invalidarTodoDuranteLaCargaNoGuardaElValor() {
+        cache.obtener("a", k -> {
+            cache.invalidarTodo();
+            return "viejo";
+        });
+
+        assertThat(cache.obtenerSiPresente("a")).isNull();
+    }
+
+    @Test
+    void unLoaderQueFallaNoDejaLaClaveBloqueada() {
+        assertThatThrownBy(() -> cache.obtener("a", k -> {
+            throw new IllegalStateException("falla");
+        })).isInstanceOf(IllegalStateException.class);
+
+        AtomicInteger cargas = new AtomicInteger();
+        cache.obtener("a", k -> "v" + cargas.incrementAndGet());
+        cache.obtener("a", k -> "v" + cargas.incrementAndGet());
+
+        assertThat(cargas).hasValue(1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ecommerce.backend.config;
+
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.controllers.CarritoController;
+import com.ecommerce.backend.controllers.ProductoController;
+import com.ecommerce.backend.services.AutocompletadoService;
+import com.ecommerce.backend.services.CarritoService;
+import com.ecommerce.backend.services.FileStorageService;
+import com.ecommerce.backend.services.ProductoService;
+import com.ecommerce.backend.services.PurgaCarritosService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Los endpoints de métricas internas exigen el permiso de Auth0; un comprador autenticado recibe 403
+ */
+@WebMvcTest(controllers = {ProductoController.class, CarritoController.class}, properties = {
+        "spring.security.oauth2.resourceserver.jwt.issuer-uri=https://issuer.test/",
+        "auth0.audience=api-test",
+        "app.cors.allowed-origins=http://localhost:4200",
+        "server.port=0"})
+@Import({SecurityConfig.class, AudienceValidator.class})
+class SecurityConfigTest {
+
+    private static final String RUTAS_PRODUCTO = "/api/private/producto";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    @MockitoBean private ProductoService productoService;
+    @MockitoBean private UsuarioIdCache usuarioIdCache;
+    @MockitoBean private FileStorageService fileStorageService;
+    @MockitoBean private ProductoDetalleCache productoDetalleCache;
+    @MockitoBean private AutocompletadoService autocompletadoService;
+    @MockitoBean private CarritoService carritoService;
+    @MockitoBean private PurgaCarritosService purgaCarritosService;
+
+    @BeforeEach
+    void simularTokens() {
+        when(jwtDecoder.decode("comprador")).thenReturn(token(List.of()));
+        when(jwtDecoder.decode("admin")).thenReturn(token(List.of("read:metricas")));
+    }
+
+    @Test
+    void compradorNoPuedeLeerMetricasInternas() throws Exception {
+        for (String ruta : List.of(RUTAS_PRODUCTO + "/_cache/stats", RUTAS_PRODUCTO + "/_count",
+                "/api/carritos/_cache/stats", "/api/carritos/_purga/stats")) {
+            mockMvc.perform(get(ruta).header(HttpHeaders.AUTHORIZATION, "Bearer comprador"))
+                    .andExpect(status().isForbidden());
+        }
+    }
+
+    @Test
+    void conElPermisoDeMetricasSePuedenLeer() throws Exception {
+        for (String ruta : List.of(RUTAS_PRODUCTO + "/_cache/stats", RUTAS_PRODUCTO + "/_count",
+                "/api/carritos/_cache/stats", "/api/carritos/_purga/stats")) {
+            mockMvc.perform(get(ruta).header(HttpHeaders.AUTHORIZATION, "Bearer admin"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private static Jwt token(List<String> permisos) {
+        return Jwt.withTokenValue("t")
+                .header("alg", "none")
+                .subject("auth0|usuario")
+                .claim("permissions", permisos)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+    }
+}
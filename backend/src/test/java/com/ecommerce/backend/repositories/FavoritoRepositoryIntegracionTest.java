@@ -0,0 +1,69 @@
+package com.ecommerce.backend.repositories;
+
+import com.ecommerce.backend.IntegracionPostgresTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FavoritoRepositoryIntegracionTest extends IntegracionPostgresTest {
+
+    @Autowired
+    private FavoritoRepository favoritoRepository;
+
+    private Long usuarioId;
+    private Long productoId;
+
+    @BeforeEach
+    void crearDatos() {
+        String sub = nuevoSub();
+        usuarioId = crearUsuario(sub);
+        productoId = crearProducto(usuarioId, sub, 10.0, 5);
+    }
+
+    @Test
+    void dobleToggleAgregaYLuegoQuita() {
+        assertThat(alternar(productoId)).isEqualTo(1);
+        assertThat(existe()).isTrue();
+
+        assertThat(alternar(productoId)).isEqualTo(-1);
+        assertThat(existe()).isFalse();
+    }
+
+    @Test
+    void toggleDeProductoInexistenteNoHaceNada() {
+        long inexistente = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id_producto), 0) + 1000 FROM productos", Long.class);
+
+        assertThat(alternar(inexistente)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM favoritos WHERE id_usuario = ?", Long.class, usuarioId)).isZero();
+    }
+
+    @Test
+    void togglesConcurrentesDejanLaFilaConsistenteConLosResultados() throws Exception {
+        List<Callable<Long>> clicks = IntStream.range(0, 8)
+                .<Callable<Long>>mapToObj(i -> () -> alternar(productoId))
+                .toList();
+
+        List<Long> resultados = enParalelo(clicks);
+
+        // Cada click informa lo que hizo (+1, -1 o 0): la suma tiene que ser lo que quedó en la tabla
+        long filas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM favoritos WHERE id_usuario = ? AND id_producto = ?", Long.class, usuarioId, productoId);
+        assertThat(filas).isBetween(0L, 1L);
+        assertThat(resultados.stream().mapToLong(Long::longValue).sum()).isEqualTo(filas);
+    }
+
+    private long alternar(Long producto) {
+        return transactionTemplate.execute(status -> favoritoRepository.alternar(usuarioId, producto));
+    }
+
+    private boolean existe() {
+        return favoritoRepository.existsByUsuario_IdAndProducto_Id(usuarioId, productoId);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ecommerce.backend.repositories;
+
+import com.ecommerce.backend.IntegracionPostgresTest;
+import com.ecommerce.backend.entities.Orden;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrdenRepositoryIntegracionTest extends IntegracionPostgresTest {
+
+    private static final AtomicLong NUMEROS = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    private String compradorSub;
+    private Long compradorId;
+    private Instant base;
+
+    @BeforeEach
+    void crearDatos() {
+        compradorSub = nuevoSub();
+        compradorId = crearUsuario(compradorSub);
+        base = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    @Test
+    void historialPaginadoRecorreTodasLasOrdenesSinRepetirAunqueCompartanFecha() {
+        // Tres órdenes con el mismo creado_en: el desempate por id no puede saltar ni repetir ninguna
+        List<Long> esperadas = new ArrayList<>();
+        esperadas.add(crearOrden(compradorId, compradorSub, base));
+        Long empateA = crearOrden(compradorId, compradorSub, base.minusSeconds(60));
+        Long empateB = crearOrden(compradorId, compradorSub, base.minusSeconds(60));
+        Long empateC = crearOrden(compradorId, compradorSub, base.minusSeconds(60));
+        esperadas.addAll(List.of(empateC, empateB, empateA));
+        esperadas.add(crearOrden(compradorId, compradorSub, base.minusSeconds(120)));
+
+        // Orden de otro comprador en el medio: no debe aparecer
+        String otroSub = nuevoSub();
+        crearOrden(crearUsuario(otroSub), otroSub, base.minusSeconds(90));
+
+        List<Long> recorridas = new ArrayList<>();
+        Instant creadoEn = null;
+        Long id = null;
+        List<Orden> pagina;
+        do {
+            pagina = ordenRepository.findHistorialComprador(compradorSub, creadoEn, id, 2);
+            pagina.forEach(o -> recorridas.add(o.getId()));
+            if (!pagina.isEmpty()) {
+                Orden ultima = pagina.get(pagina.size() - 1);
+                creadoEn = ultima.getCreadoEn();
+                id = ultima.getId();
+            }
+        } while (pagina.size() == 2);
+
+        assertThat(recorridas).containsExactlyElementsOf(esperadas);
+    }
+
+    @Test
+    void feedDelVendedorPaginaDentroDeLaVentanaConUnaFilaPorOrden() {
+        String vendedorSub = nuevoSub();
+        Long vendedorId = crearUsuario(vendedorSub);
+        Long producto = crearProducto(vendedorId, vendedorSub, 10.0, 100);
+        Long otroProducto = crearProducto(vendedorId, vendedorSub, 5.0, 100);
+
+        Long fueraDeVentana = crearOrden(compradorId, compradorSub, base.minus(10, ChronoUnit.DAYS));
+        agregarItem(fueraDeVentana, producto, vendedorSub);
+        List<Long> esperadas = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Long orden = crearOrden(compradorId, compradorSub, base.minusSeconds(60));
+            agregarItem(orden, producto, vendedorSub);
+            // Dos líneas del mismo vendedor: la orden sigue apareciendo una sola vez
+            agregarItem(orden, otroProducto, vendedorSub);
+            esperadas.add(0, orden);
+        }
+        Long ajena = crearOrden(compradorId, compradorSub, base.minusSeconds(30));
+        String otroVendedor = nuevoSub();
+        agregarItem(ajena, crearProducto(crearUsuario(otroVendedor), otroVendedor, 1.0, 10), otroVendedor);
+
+        Instant desde = base.minus(1, ChronoUnit.DAYS);
+        List<Long> recorridas = new ArrayList<>();
+        Instant creadoEn = null;
+        Long id = null;
+        List<Orden> pagina;
+        do {
+            pagina = ordenRepository.findFeedVendedor(vendedorSub, desde, null, creadoEn, id, 2);
+            pagina.forEach(o -> recorridas.add(o.getId()));
+            if (!pagina.isEmpty()) {
+                Orden ultima = pagina.get(pagina.size() - 1);
+                creadoEn = ultima.getCreadoEn();
+                id = ultima.getId();
+            }
+        } while (pagina.size() == 2);
+
+        assertThat(recorridas).containsExactlyElementsOf(esperadas);
+        assertThat(ordenRepository.findFeedVendedor(vendedorSub, null, desde, null, null, 10))
+                .extracting(Orden::getId).containsExactly(fueraDeVentana);
+    }
+
+    private void agregarItem(Long ordenId, Long productoId, String vendedorSub) {
+        jdbcTemplate.update(
+                "INSERT INTO orden_items (id_orden, id_producto, cantidad, precio_unitario, vendedor_sub, creado_en) " +
+                "VALUES (?, ?, 1, 10.0, ?, now())", ordenId, productoId, vendedorSub);
+    }
+
+    private Long crearOrden(Long usuarioId, String sub, Instant creadoEn) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO ordenes (numero_orden, id_usuario_comprador, comprador_sub, direccion_envio, ciudad, " +
+                "telefono, total, estado, creado_en) " +
+                "VALUES (?, ?, ?, 'Calle de prueba 123', 'Ciudad', '000', 10.0, 'PENDIENTE', ?) RETURNING id_orden",
+                Long.class, "T" + Long.toString(NUMEROS.incrementAndGet(), 36), usuarioId, sub, Timestamp.from(creadoEn));
+    }
+}
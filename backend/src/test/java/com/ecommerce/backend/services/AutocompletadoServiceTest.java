@@ -0,0 +1,81 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.dto.SugerenciaDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutocompletadoServiceTest {
+
+    private record Fila(long id, String titulo, long peso) {}
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AutocompletadoService servicio = new AutocompletadoService(jdbcTemplate);
+    private List<Fila> filas = new ArrayList<>();
+
+    @BeforeEach
+    void simularBaseDeDatos() throws Exception {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Fila fila : filas) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(fila.id());
+                when(rs.getString(2)).thenReturn(fila.titulo());
+                when(rs.getLong(3)).thenReturn(fila.peso());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void unPrefijoCortoDevuelveLosMasPopularesAunqueEstenLejosEnOrdenAlfabetico() {
+        for (int i = 0; i < 6000; i++) {
+            filas.add(new Fila(i + 1, String.format("aa%05d", i), 1));
+        }
+        filas.add(new Fila(10_001, "Azul marino", 50));
+        filas.add(new Fila(10_002, "Árbol de navidad", 80));
+        servicio.cargarORefrescar();
+
+        List<SugerenciaDto> sugerencias = servicio.sugerir("a", 3);
+
+        assertThat(sugerencias).extracting(SugerenciaDto::getId).startsWith(10_002L, 10_001L).hasSize(3);
+    }
+
+    @Test
+    void filtraPorPrefijosLargosYPalabrasAnteriores() {
+        filas = List.of(
+                new Fila(1, "Camisa azul", 5),
+                new Fila(2, "Camiseta roja", 9),
+                new Fila(3, "Cama azul", 7));
+        servicio.cargarORefrescar();
+
+        assertThat(servicio.sugerir("camis", 10)).extracting(SugerenciaDto::getId).containsExactly(2L, 1L);
+        assertThat(servicio.sugerir("azul cam", 10)).extracting(SugerenciaDto::getId).containsExactly(3L, 1L);
+        assertThat(servicio.sugerir("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    void elRefrescoSincronizaAltasRenombresYBajasHechasEnOtraInstancia() {
+        filas = List.of(new Fila(1, "Lampara", 1), new Fila(2, "Mesa", 1));
+        servicio.cargarORefrescar();
+
+        filas = List.of(new Fila(2, "Mesa ratona", 1), new Fila(3, "Lapicera", 4));
+        servicio.cargarORefrescar();
+
+        assertThat(servicio.sugerir("la", 10)).extracting(SugerenciaDto::getId).containsExactly(3L);
+        assertThat(servicio.sugerir("ratona", 10)).extracting(SugerenciaDto::getId).containsExactly(2L);
+    }
+}
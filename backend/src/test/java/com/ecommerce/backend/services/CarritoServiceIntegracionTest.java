@@ -0,0 +1,98 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.IntegracionPostgresTest;
+import com.ecommerce.backend.cache.CarritoCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.dto.AgregarCarritoDto;
+import com.ecommerce.backend.dto.FusionCarritoResultadoDto;
+import com.ecommerce.backend.dto.OperacionesCarritoDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import({CarritoService.class, CarritoCache.class, UsuarioIdCache.class})
+class CarritoServiceIntegracionTest extends IntegracionPostgresTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    private String sub;
+    private Long usuarioId;
+
+    @BeforeEach
+    void crearDatos() {
+        sub = nuevoSub();
+        usuarioId = crearUsuario(sub);
+    }
+
+    @Test
+    void fusionarSumaYRecortaAlStockDisponible() {
+        Long conLugar = crearProducto(usuarioId, sub, 10.0, 10);
+        Long casiLleno = crearProducto(usuarioId, sub, 20.0, 5);
+        Long sinStock = crearProducto(usuarioId, sub, 30.0, 0);
+        long inexistente = jdbcTemplate.queryForObject("SELECT MAX(id_producto) + 1000 FROM productos", Long.class);
+        agregarLinea(casiLleno, 3);
+
+        FusionCarritoResultadoDto resultado = carritoService.fusionarCarritoInvitado(sub, List.of(
+                new AgregarCarritoDto(conLugar, 2),
+                new AgregarCarritoDto(casiLleno, 4),
+                new AgregarCarritoDto(sinStock, 1),
+                new AgregarCarritoDto(inexistente, 1)));
+
+        assertThat(cantidadEnCarrito(conLugar)).isEqualTo(2);
+        assertThat(cantidadEnCarrito(casiLleno)).isEqualTo(5);
+        assertThat(cantidadEnCarrito(sinStock)).isNull();
+        assertThat(resultado.getAjustados()).containsExactly(casiLleno);
+        assertThat(resultado.getOmitidos()).containsExactlyInAnyOrder(sinStock, inexistente);
+    }
+
+    @Test
+    void fusionesConcurrentesNoSuperanElStock() throws Exception {
+        Long productoId = crearProducto(usuarioId, sub, 10.0, 5);
+
+        List<Callable<FusionCarritoResultadoDto>> fusiones = List.of(
+                () -> carritoService.fusionarCarritoInvitado(sub, List.of(new AgregarCarritoDto(productoId, 4))),
+                () -> carritoService.fusionarCarritoInvitado(sub, List.of(new AgregarCarritoDto(productoId, 4))),
+                () -> carritoService.fusionarCarritoInvitado(sub, List.of(new AgregarCarritoDto(productoId, 4))));
+        enParalelo(fusiones);
+
+        // Cada upsert recorta sobre la cantidad ya confirmada por los demás, nunca sobre una lectura vieja
+        assertThat(cantidadEnCarrito(productoId)).isEqualTo(5);
+    }
+
+    @Test
+    void operacionesEnLoteBorranYEscribenEnDosSentencias() {
+        Long quitar = crearProducto(usuarioId, sub, 10.0, 5);
+        Long cambiar = crearProducto(usuarioId, sub, 10.0, 5);
+        Long nuevo = crearProducto(usuarioId, sub, 10.0, 5);
+        agregarLinea(quitar, 1);
+        agregarLinea(cambiar, 1);
+
+        carritoService.aplicarOperaciones(sub, List.of(
+                new OperacionesCarritoDto.Operacion(OperacionesCarritoDto.TipoOperacion.ELIMINAR, quitar, null),
+                new OperacionesCarritoDto.Operacion(OperacionesCarritoDto.TipoOperacion.ESTABLECER, cambiar, 4),
+                new OperacionesCarritoDto.Operacion(OperacionesCarritoDto.TipoOperacion.AGREGAR, nuevo, 2),
+                new OperacionesCarritoDto.Operacion(OperacionesCarritoDto.TipoOperacion.AGREGAR, nuevo, 1)));
+
+        assertThat(cantidadEnCarrito(quitar)).isNull();
+        assertThat(cantidadEnCarrito(cambiar)).isEqualTo(4);
+        assertThat(cantidadEnCarrito(nuevo)).isEqualTo(3);
+    }
+
+    private void agregarLinea(Long productoId, int cantidad) {
+        jdbcTemplate.update("INSERT INTO carritos (id_usuario, id_producto, cantidad, agregado_en, actualizado_en) " +
+                "VALUES (?, ?, ?, now(), now())", usuarioId, productoId, cantidad);
+    }
+
+    private Integer cantidadEnCarrito(Long productoId) {
+        List<Integer> filas = jdbcTemplate.queryForList(
+                "SELECT cantidad FROM carritos WHERE id_usuario = ? AND id_producto = ?", Integer.class, usuarioId, productoId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+}
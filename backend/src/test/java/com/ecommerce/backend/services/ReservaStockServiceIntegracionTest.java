@@ -0,0 +1,150 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.IntegracionPostgresTest;
+import com.ecommerce.backend.cache.CarritoCache;
+import com.ecommerce.backend.cache.ProductoDetalleCache;
+import com.ecommerce.backend.cache.UsuarioIdCache;
+import com.ecommerce.backend.entities.Orden;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Import({OrdenService.class, ReservaStockService.class, StockService.class,
+         ProductoDetalleCache.class, CarritoCache.class, UsuarioIdCache.class})
+class ReservaStockServiceIntegracionTest extends IntegracionPostgresTest {
+
+    // Las reservas no tienen FK a ordenes: basta con un id que ningún otro test use
+    private static final AtomicLong ORDENES = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @MockitoBean private CarritoService carritoService;
+    @MockitoBean private StripeService stripeService;
+    @MockitoBean private ResumenVentasService resumenVentasService;
+    @MockitoBean private GeneradorNumeroOrden generadorNumeroOrden;
+
+    private String sub;
+    private Long usuarioId;
+    private Long productoId;
+    private Long ordenId;
+
+    @BeforeEach
+    void crearDatos() {
+        sub = nuevoSub();
+        usuarioId = crearUsuario(sub);
+        productoId = crearProducto(usuarioId, sub, 10.0, 5);
+        ordenId = ORDENES.incrementAndGet();
+    }
+
+    @Test
+    void laReservaExpiraConElRelojDeLaBase() {
+        Instant expiraEn = reservaStockService.reservarStock(ordenId, Map.of(productoId, 2));
+
+        Instant expiraGuardado = jdbcTemplate.queryForObject(
+                "SELECT expira_en FROM reservas_stock WHERE id_orden = ?", Timestamp.class, ordenId).toInstant();
+        assertThat(expiraGuardado).isEqualTo(expiraEn);
+        assertThat(Duration.between(jdbcTemplate.queryForObject("SELECT now()", Timestamp.class).toInstant(), expiraEn))
+                .isBetween(Duration.ofMinutes(14), Duration.ofMinutes(15));
+
+        // Vigente: el barrido no la toca
+        reservaStockService.liberarReservasExpiradas();
+        assertThat(stockReservado()).isEqualTo(2);
+
+        vencer();
+        reservaStockService.liberarReservasExpiradas();
+
+        assertThat(stockReservado()).isZero();
+        assertThat(reservasDeLaOrden()).isZero();
+        assertThat(stock()).isEqualTo(5);
+    }
+
+    @Test
+    void pagoYBarridoConcurrentesDescuentanElStockUnaSolaVez() throws Exception {
+        reservaStockService.reservarStock(ordenId, Map.of(productoId, 2));
+        vencer();
+
+        List<Callable<Boolean>> tareas = List.of(
+                () -> { reservaStockService.confirmarReservas(ordenId, Map.of(productoId, 2)); return true; },
+                () -> { reservaStockService.liberarReservasExpiradas(); return true; });
+        enParalelo(tareas);
+
+        // Gane quien gane la reserva, la venta descuenta 2 y no queda nada retenido
+        assertThat(stock()).isEqualTo(3);
+        assertThat(stockReservado()).isZero();
+        assertThat(reservasDeLaOrden()).isZero();
+    }
+
+    @Test
+    void dosConfirmacionesDePagoSimultaneasDescuentanElStockUnaSolaVez() throws Exception {
+        // Sin reserva vigente: el descuento va por el camino directo, el que antes se duplicaba
+        Long pendiente = crearOrdenPendiente(2);
+
+        List<Callable<Boolean>> tareas = List.of(
+                () -> pagar(pendiente, "pi_a"),
+                () -> pagar(pendiente, "pi_b"));
+        List<Boolean> resultados = enParalelo(tareas);
+
+        assertThat(resultados).containsExactlyInAnyOrder(true, false);
+        assertThat(stock()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM ordenes WHERE id_orden = ?", String.class, pendiente))
+                .isEqualTo("PAGADO");
+        verify(resumenVentasService, times(1)).registrarCambioEstado(any(Orden.class), eq("PENDIENTE"), eq("PAGADO"));
+    }
+
+    private boolean pagar(Long orden, String idPago) {
+        try {
+            ordenService.marcarComoPagada(orden, idPago, "card");
+            return true;
+        } catch (IllegalStateException yaPagada) {
+            return false;
+        }
+    }
+
+    private Long crearOrdenPendiente(int cantidad) {
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO ordenes (numero_orden, id_usuario_comprador, comprador_sub, direccion_envio, ciudad, " +
+                "telefono, total, estado, creado_en) " +
+                "VALUES (?, ?, ?, 'Calle de prueba 123', 'Ciudad', '000', ?, 'PENDIENTE', now()) RETURNING id_orden",
+                Long.class, "T" + Long.toString(ORDENES.incrementAndGet(), 36), usuarioId, sub, 10.0 * cantidad);
+        jdbcTemplate.update(
+                "INSERT INTO orden_items (id_orden, id_producto, cantidad, precio_unitario, vendedor_sub, creado_en) " +
+                "VALUES (?, ?, ?, 10.0, ?, now())", id, productoId, cantidad, sub);
+        return id;
+    }
+
+    private void vencer() {
+        jdbcTemplate.update("UPDATE reservas_stock SET expira_en = now() - interval '1 minute' WHERE id_orden = ?", ordenId);
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM productos WHERE id_producto = ?", Integer.class, productoId);
+    }
+
+    private int stockReservado() {
+        return jdbcTemplate.queryForObject("SELECT stock_reservado FROM productos WHERE id_producto = ?", Integer.class, productoId);
+    }
+
+    private long reservasDeLaOrden() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservas_stock WHERE id_orden = ?", Long.class, ordenId);
+    }
+}
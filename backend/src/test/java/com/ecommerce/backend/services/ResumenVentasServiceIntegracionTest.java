@@ -0,0 +1,173 @@
+package com.ecommerce.backend.services;
+
+import com.ecommerce.backend.IntegracionPostgresTest;
+import com.ecommerce.backend.entities.Orden;
+import com.ecommerce.backend.entities.OrdenItem;
+import com.ecommerce.backend.entities.VentaVendedorTotal;
+import com.ecommerce.backend.repositories.OrdenRepository;
+import com.ecommerce.backend.repositories.ProductoRepository;
+import com.ecommerce.backend.repositories.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(ResumenVentasService.class)
+class ResumenVentasServiceIntegracionTest extends IntegracionPostgresTest {
+
+    private static final AtomicLong NUMEROS = new AtomicLong(System.nanoTime());
+
+    private record Fila(long ordenes, long unidades, double ingresos) {}
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private String compradorSub;
+    private Long compradorId;
+    private String vendedorA;
+    private String vendedorB;
+    private Long productoA1;
+    private Long productoA2;
+    private Long productoB;
+
+    @BeforeEach
+    void crearDatos() {
+        compradorSub = nuevoSub();
+        compradorId = crearUsuario(compradorSub);
+        vendedorA = nuevoSub();
+        vendedorB = nuevoSub();
+        Long idA = crearUsuario(vendedorA);
+        Long idB = crearUsuario(vendedorB);
+        productoA1 = crearProducto(idA, vendedorA, 10.0, 100);
+        productoA2 = crearProducto(idA, vendedorA, 5.0, 100);
+        productoB = crearProducto(idB, vendedorB, 2.5, 100);
+    }
+
+    @Test
+    void cadaCambioDeEstadoMueveLasLineasDeUnEstadoAOtro() {
+        Long ordenId = crearOrden();
+
+        assertThat(totales(vendedorA)).containsEntry("PENDIENTE", new Fila(1, 3, 25.0));
+        assertThat(totales(vendedorB)).containsEntry("PENDIENTE", new Fila(1, 4, 10.0));
+
+        cambiarEstado(ordenId, "PENDIENTE", "PAGADO");
+        assertThat(totales(vendedorA))
+                .containsEntry("PENDIENTE", new Fila(0, 0, 0.0))
+                .containsEntry("PAGADO", new Fila(1, 3, 25.0));
+
+        cambiarEstado(ordenId, "PAGADO", "CANCELADO");
+        assertThat(totales(vendedorA))
+                .containsEntry("PAGADO", new Fila(0, 0, 0.0))
+                .containsEntry("CANCELADO", new Fila(1, 3, 25.0));
+        assertThat(totales(vendedorB))
+                .containsEntry("PENDIENTE", new Fila(0, 0, 0.0))
+                .containsEntry("PAGADO", new Fila(0, 0, 0.0))
+                .containsEntry("CANCELADO", new Fila(1, 4, 10.0));
+
+        // Las filas diarias suman lo mismo que los totales
+        assertThat(diarias(vendedorA)).isEqualTo(totales(vendedorA));
+    }
+
+    @Test
+    void pagosConcurrentesDelMismoVendedorNoPierdenActualizaciones() throws Exception {
+        List<Long> ordenes = List.of(crearOrden(), crearOrden(), crearOrden(), crearOrden());
+
+        List<Callable<Boolean>> pagos = ordenes.stream()
+                .<Callable<Boolean>>map(id -> () -> { cambiarEstado(id, "PENDIENTE", "PAGADO"); return true; })
+                .toList();
+        enParalelo(pagos);
+
+        assertThat(totales(vendedorA))
+                .containsEntry("PENDIENTE", new Fila(0, 0, 0.0))
+                .containsEntry("PAGADO", new Fila(4, 12, 100.0));
+        assertThat(diarias(vendedorA)).isEqualTo(totales(vendedorA));
+    }
+
+    @Test
+    void laReconciliacionCorrigeElDesvioDeLosUltimosDias() {
+        Long ordenId = crearOrden();
+        cambiarEstado(ordenId, "PENDIENTE", "PAGADO");
+        jdbcTemplate.update("UPDATE ventas_vendedor_diarias SET ordenes = ordenes + 5, unidades = unidades + 7 " +
+                "WHERE vendedor_sub = ? AND estado = 'PAGADO'", vendedorA);
+        jdbcTemplate.update("UPDATE ventas_vendedor_totales SET ordenes = ordenes + 5, unidades = unidades + 7 " +
+                "WHERE vendedor_sub = ? AND estado = 'PAGADO'", vendedorA);
+
+        resumenVentasService.reconciliarVentana();
+
+        assertThat(totales(vendedorA)).containsEntry("PAGADO", new Fila(1, 3, 25.0));
+        assertThat(diarias(vendedorA)).isEqualTo(totales(vendedorA));
+    }
+
+    private Long crearOrden() {
+        return transactionTemplate.execute(status -> {
+            Orden orden = new Orden();
+            orden.setNumeroOrden("T" + Long.toString(NUMEROS.incrementAndGet(), 36));
+            orden.setComprador(usuarioRepository.getReferenceById(compradorId));
+            orden.setCompradorSub(compradorSub);
+            orden.setDireccionEnvio("Calle de prueba 123");
+            orden.setCiudad("Ciudad");
+            orden.setTelefono("000");
+            orden.setTotal(35.0);
+            agregarItem(orden, productoA1, vendedorA, 2, 10.0);
+            agregarItem(orden, productoA2, vendedorA, 1, 5.0);
+            agregarItem(orden, productoB, vendedorB, 4, 2.5);
+            Orden guardada = ordenRepository.save(orden);
+            resumenVentasService.registrarCambioEstado(guardada, null, guardada.getEstado());
+            return guardada.getId();
+        });
+    }
+
+    private void agregarItem(Orden orden, Long productoId, String vendedorSub, int cantidad, double precio) {
+        OrdenItem item = new OrdenItem();
+        item.setOrden(orden);
+        item.setProducto(productoRepository.getReferenceById(productoId));
+        item.setVendedorSub(vendedorSub);
+        item.setCantidad(cantidad);
+        item.setPrecioUnitario(precio);
+        orden.getItems().add(item);
+    }
+
+    private void cambiarEstado(Long ordenId, String anterior, String nuevo) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Orden orden = ordenRepository.findById(ordenId).orElseThrow();
+            orden.setEstado(nuevo);
+            resumenVentasService.registrarCambioEstado(orden, anterior, nuevo);
+        });
+    }
+
+    private Map<String, Fila> totales(String vendedorSub) {
+        return resumenVentasService.totales(vendedorSub).stream()
+                .collect(Collectors.toMap(VentaVendedorTotal::getEstado,
+                        t -> new Fila(t.getOrdenes(), t.getUnidades(), t.getIngresos())));
+    }
+
+    private Map<String, Fila> diarias(String vendedorSub) {
+        Map<String, Fila> porEstado = new HashMap<>();
+        jdbcTemplate.query("SELECT estado, SUM(ordenes), SUM(unidades), SUM(ingresos) FROM ventas_vendedor_diarias " +
+                        "WHERE vendedor_sub = ? AND fecha >= ? GROUP BY estado",
+                rs -> {
+                    porEstado.put(rs.getString(1), new Fila(rs.getLong(2), rs.getLong(3), rs.getDouble(4)));
+                },
+                vendedorSub, Date.valueOf(resumenVentasService.hoy().minusDays(1)));
+        return porEstado;
+    }
+}
@@ -0,0 +1,98 @@
+package com.ecommerce.backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SecuenciaNumeroOrdenServiceTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2025, 10, 17);
+
+    @Test
+    void formateaConPrefijoFechaYCorrelativoBase36DeAnchoFijo() {
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 1)).isEqualTo("ORD-20251017-0000001");
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 35)).isEqualTo("ORD-20251017-000000Z");
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 36)).isEqualTo("ORD-20251017-0000010");
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 1295)).isEqualTo("ORD-20251017-00000ZZ");
+    }
+
+    @Test
+    void ocupaExactamenteLoQuePermiteLaColumna() {
+        long maximo = (long) Math.pow(36, 7) - 1;
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 0)).hasSize(20);
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, maximo)).isEqualTo("ORD-20251017-ZZZZZZZ").hasSize(20);
+    }
+
+    @Test
+    void elOrdenAlfabeticoSigueAlNumerico() {
+        long[] valores = { 9, 10, 35, 36, 99, 100, 1295, 1296, 46655, 46656, 123456789L };
+        for (int i = 1; i < valores.length; i++) {
+            String anterior = SecuenciaNumeroOrdenService.formatear(FECHA, valores[i - 1]);
+            String actual = SecuenciaNumeroOrdenService.formatear(FECHA, valores[i]);
+            assertThat(anterior).isLessThan(actual);
+        }
+        assertThat(SecuenciaNumeroOrdenService.formatear(FECHA, 999_999))
+                .isLessThan(SecuenciaNumeroOrdenService.formatear(FECHA.plusDays(1), 1));
+    }
+
+    @Test
+    void fallaAlAgotarElCorrelativo() {
+        long agotado = (long) Math.pow(36, 7);
+        assertThatThrownBy(() -> SecuenciaNumeroOrdenService.formatear(FECHA, agotado))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void repartePorBloquesSinRepetirEntreHilos() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        AtomicLong secuencia = new AtomicLong(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any(Object[].class))).thenReturn(10L);
+        when(jdbcTemplate.queryForObject(eq("SELECT nextval('ordenes_numero_seq')"), eq(Long.class)))
+                .thenAnswer(inv -> secuencia.getAndAdd(10));
+
+        SecuenciaNumeroOrdenService generador = new SecuenciaNumeroOrdenService(jdbcTemplate, 10);
+        generador.prepararSecuencia();
+
+        int hilos = 8;
+        int porHilo = 250;
+        Set<String> numeros = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(pool.submit(() -> {
+                for (int i = 0; i < porHilo; i++) {
+                    numeros.add(generador.siguiente());
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(numeros).hasSize(hilos * porHilo);
+        verify(jdbcTemplate, times(hilos * porHilo / 10))
+                .queryForObject(eq("SELECT nextval('ordenes_numero_seq')"), eq(Long.class));
+    }
+}